@@ -34,7 +34,7 @@ public class Main {
                     break;
                 case SlaveSystem.SLAVE_ROLE:
                 	ConfigurationSingleton.get().update(commandSlave);
-                	DatasetDescriptorSingleton.set(null);
+                	DatasetDescriptorSingleton.get().update(commandSlave);
                 	
                 	SlaveSystem.start();
                     break;
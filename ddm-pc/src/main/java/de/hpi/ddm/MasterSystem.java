@@ -11,6 +11,7 @@ import akka.actor.ActorSystem;
 import akka.cluster.Cluster;
 import de.hpi.ddm.actors.Collector;
 import de.hpi.ddm.actors.Master;
+import de.hpi.ddm.actors.NodeDispatcher;
 import de.hpi.ddm.actors.Reader;
 import de.hpi.ddm.actors.Reaper;
 import de.hpi.ddm.actors.Worker;
@@ -49,8 +50,11 @@ public class MasterSystem {
 		Cluster.get(system).registerOnMemberUp(new Runnable() {
 			@Override
 			public void run() {
-				for (int i = 0; i < c.getNumWorkers(); i++)
-					system.actorOf(Worker.props(), Worker.DEFAULT_NAME + i);
+				if (c.isNodeDispatcher())
+					system.actorOf(NodeDispatcher.props(c.getNumWorkers()), NodeDispatcher.DEFAULT_NAME);
+				else
+					for (int i = 0; i < c.getNumWorkers(); i++)
+						system.actorOf(Worker.props(), Worker.DEFAULT_NAME + i);
 				
 				if (!c.isStartPaused())
 					system.actorSelection("/user/" + Master.DEFAULT_NAME).tell(new Master.StartMessage(), ActorRef.noSender());
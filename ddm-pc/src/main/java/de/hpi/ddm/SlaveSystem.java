@@ -8,6 +8,7 @@ import com.typesafe.config.ConfigFactory;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.cluster.Cluster;
+import de.hpi.ddm.actors.NodeDispatcher;
 import de.hpi.ddm.actors.Reaper;
 import de.hpi.ddm.actors.Worker;
 import de.hpi.ddm.configuration.Configuration;
@@ -39,8 +40,11 @@ public class SlaveSystem {
 		Cluster.get(system).registerOnMemberUp(new Runnable() {
 			@Override
 			public void run() {
-				for (int i = 0; i < c.getNumWorkers(); i++)
-					system.actorOf(Worker.props(), Worker.DEFAULT_NAME + i);
+				if (c.isNodeDispatcher())
+					system.actorOf(NodeDispatcher.props(c.getNumWorkers()), NodeDispatcher.DEFAULT_NAME);
+				else
+					for (int i = 0; i < c.getNumWorkers(); i++)
+						system.actorOf(Worker.props(), Worker.DEFAULT_NAME + i);
 			}
 		});
 
@@ -3,21 +3,27 @@ package de.hpi.ddm.actors;
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import de.hpi.ddm.algorithms.CombinationCracker;
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 import de.hpi.ddm.structures.StudentRecord;
+import lombok.AllArgsConstructor;
 import lombok.Data;
-import org.apache.commons.collections4.MultiValuedMap;
-import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Handles the distribution of the work in a batch among multiple workers,
  * and the aggregation of the results received from them.
+ *
+ * The full passwords whose possible characters and length are the same are cracked together by the same job,
+ * which checks each combination against all of their hashes.
  */
 public class BatchProcessor extends AbstractLoggingActor {
     ////////////////////////
@@ -26,13 +32,32 @@ public class BatchProcessor extends AbstractLoggingActor {
 
     public static final String DEFAULT_NAME = "batchprocessor";
 
-    public static Props props(ActorRef collector, ActorRef workerPool) {
-        return Props.create(BatchProcessor.class, () -> new BatchProcessor(collector, workerPool));
+    // Full password cracking jobs are split into chunks, which should take this long according to the observed hash rate
+    private static final double TARGET_CHUNK_SECONDS = 2.0;
+    private static final long MIN_CHUNK_SIZE = 1 << 16;
+    // Hash rate assumed until the first chunk results arrive, and weight of new measurements in the hash rate average
+    private static final double DEFAULT_HASHES_PER_SECOND = 1e6;
+    private static final double HASH_RATE_SMOOTHING = 0.3;
+
+    /**
+     * @param batchId Number of the batch, in the order the batches were read (older batches are cracked first).
+     * @param numRegistrants Number of workers (e.g. node dispatchers) registered with the pool when the batch was read.
+     * @param numWorkers Number of workers that run the work items of the registrants.
+     * @param hashesPerSecond Hash rate of a worker observed in the previous batches, or zero if unknown.
+     */
+    public static Props props(ActorRef collector, ActorRef workerPool, ActorRef hintSweepPlanner, long batchId, int numRegistrants, int numWorkers, double hashesPerSecond) {
+        return Props.create(BatchProcessor.class, () -> new BatchProcessor(collector, workerPool, hintSweepPlanner, batchId, numRegistrants, numWorkers, hashesPerSecond));
     }
 
-    private BatchProcessor(ActorRef collector, ActorRef workerPool) {
+    private BatchProcessor(ActorRef collector, ActorRef workerPool, ActorRef hintSweepPlanner, long batchId, int numRegistrants, int numWorkers, double hashesPerSecond) {
         this.collector = collector;
         this.workerPool = workerPool;
+        this.hintSweepPlanner = hintSweepPlanner;
+        this.batchId = batchId;
+        this.numRegistrants = numRegistrants;
+        this.numWorkers = numWorkers;
+        this.observedHashesPerSecond = hashesPerSecond;
+        this.hashesPerSecond = hashesPerSecond > 0 ? hashesPerSecond : DEFAULT_HASHES_PER_SECOND;
     }
 
     /////////////////
@@ -41,6 +66,10 @@ public class BatchProcessor extends AbstractLoggingActor {
 
     private final ActorRef collector;
     private final ActorRef workerPool;
+    private final ActorRef hintSweepPlanner;
+    private final long batchId;
+    private final int numRegistrants;
+    private final int numWorkers;
 
     /**
      * Stores the information associated with a student record,
@@ -61,12 +90,86 @@ public class BatchProcessor extends AbstractLoggingActor {
         }
     }
 
-    // Those maps allow us to associate hint and full password hashes with the corresponding student work log,
-    // in order to aggregate the results efficiently when they are received from the workers
-    private MultiValuedMap<SHA256Hash, StudentCrackingWorkLog> hintHashToRegistry;
-    private MultiValuedMap<SHA256Hash, StudentCrackingWorkLog> fullPasswordHashToRegistry;
+    /**
+     * Associates hashes with the work logs of the students they belong to. The hashes are stored in a digest table,
+     * and the work logs are stored in a list indexed by the ID of the corresponding hash in the table.
+     */
+    private static class HashRegistry {
+        private final DigestTable hashes = new DigestTable();
+        private final List<List<StudentCrackingWorkLog>> workLogs = new ArrayList<>();
+
+        void put(SHA256Hash hash, StudentCrackingWorkLog workLog) {
+            int id = hashes.add(hash);
+            if (id == workLogs.size())
+                workLogs.add(new ArrayList<>(1));
+            workLogs.get(id).add(workLog);
+        }
+
+        List<StudentCrackingWorkLog> remove(SHA256Hash hash) {
+            int id = hashes.remove(hash);
+            if (id < 0)
+                return new ArrayList<>();
+
+            List<StudentCrackingWorkLog> removed = workLogs.get(id);
+            workLogs.set(id, null);
+            return removed;
+        }
 
-    private int pendingHintMessages;
+        boolean contains(SHA256Hash hash) {
+            return hashes.contains(hash);
+        }
+
+        boolean isEmpty() {
+            return hashes.isEmpty();
+        }
+    }
+
+    /**
+     * The space of combinations in which a full password is searched. Full passwords with the same space are cracked together.
+     */
+    @Data @AllArgsConstructor
+    private static class FullPasswordSpace {
+        String chars; // Sorted
+        int length;
+    }
+
+    /**
+     * A job cracking the full passwords of a space, which is split into chunks of combination indices.
+     */
+    private static class FullPasswordJob {
+        final long id;
+        final Set<SHA256Hash> remainingHashes;
+        // Start indices of the chunks without a result, which may arrive twice for a chunk (see WorkerPool)
+        final Set<Long> pendingChunks = new HashSet<>();
+        boolean finished = false;
+
+        FullPasswordJob(long id, Set<SHA256Hash> hashes) {
+            this.id = id;
+            this.remainingHashes = new HashSet<>(hashes);
+        }
+    }
+
+    // Those registries allow us to associate hint and full password hashes with the corresponding student work log,
+    // in order to aggregate the results efficiently when they are received from the workers
+    private HashRegistry hintHashToRegistry;
+    private HashRegistry fullPasswordHashToRegistry;
+
+    // Students whose hints are all resolved, which are started together by their space once the current message is handled
+    private Map<FullPasswordSpace, List<StudentCrackingWorkLog>> readyWorkLogs;
+    // Full password cracking jobs by ID, which is used as the job key of their chunks. A job is removed once it is finished
+    // and no result is pending for any of its chunks
+    private Map<Long, FullPasswordJob> fullPasswordJobs;
+    // Full password hashes that have been assigned to a job, e.g. so that students with the same password share it
+    private Set<SHA256Hash> fullPasswordHashesInJobs;
+    private long nextFullPasswordJobId = 0;
+
+    // Moving average of the hash rate reported by the workers, used to size the full password chunks. Unlike the rate
+    // used for the chunks, the observed rate is zero until a worker has reported one, so that the hint sweep planner and
+    // the next batches are not sized by the default rate
+    private double hashesPerSecond;
+    private double observedHashesPerSecond;
+
+    private boolean batchComplete = false;
 
     /////////////////////
     // Actor Lifecycle //
@@ -85,115 +188,236 @@ public class BatchProcessor extends AbstractLoggingActor {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(Master.BatchMessage.class, this::handle)
-                .match(Worker.CrackedHintsMessage.class, this::handle)
+                .match(HintSweepPlanner.HintsCrackedMessage.class, this::handle)
+                .match(HintSweepPlanner.UncrackableHintsMessage.class, this::handle)
                 .match(Worker.CrackedFullPasswordMessage.class, this::handle)
+                .match(WorkerPool.WorkCancelledMessage.class, this::handle)
+                .match(WorkerPool.WorkItemSplitMessage.class, this::handle)
+                .match(Worker.WorkItemCancelledMessage.class, this::handle)
+                .match(Worker.WorkItemFailedMessage.class, this::handle)
                 .matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
                 .build();
     }
 
     private void handle(Master.BatchMessage message) {
         // Store the records in the batch in a way that is convenient for aggregating the results later
-        this.fullPasswordHashToRegistry = new HashSetValuedHashMap<>();
-        this.hintHashToRegistry = new HashSetValuedHashMap<>();
+        this.fullPasswordHashToRegistry = new HashRegistry();
+        this.hintHashToRegistry = new HashRegistry();
+        this.readyWorkLogs = new HashMap<>();
+        this.fullPasswordJobs = new HashMap<>();
+        this.fullPasswordHashesInJobs = new HashSet<>();
+        List<StudentCrackingWorkLog> workLogsWithoutHints = new ArrayList<>();
+        Map<String, Set<SHA256Hash>> hintHashesByCharset = new HashMap<>();
         for (StudentRecord r : message.getRecords()) {
             StudentCrackingWorkLog reg = new StudentCrackingWorkLog(r);
             for (SHA256Hash hintHash : r.getHintHashes()) {
                 hintHashToRegistry.put(hintHash, reg);
             }
             fullPasswordHashToRegistry.put(r.getFullPasswordHash(), reg);
+
+            if (r.getHintHashes().length > 0)
+                hintHashesByCharset.computeIfAbsent(r.getPasswordChars(), c -> new HashSet<>()).addAll(Arrays.asList(r.getHintHashes()));
+            else
+                workLogsWithoutHints.add(reg);
         }
 
-        // Do some validations on the records in the batch. Those are the things we assume to be true, in
-        // order to efficiently distribute the workload among our workers
-        if (message.getRecords().stream().map(StudentRecord::getPasswordChars).distinct().count() != 1 ||
-            message.getRecords().stream().mapToInt(StudentRecord::getPasswordLength).distinct().count() != 1) {
-            throw new IllegalArgumentException("Expected all records in a batch to have the same password characters and length");
+        // Send the hints to the hint sweep planner, grouped by the character set they are permutations of,
+        // which cracks them together with the hints of the same character set from other batches
+        hintHashesByCharset.forEach((charset, hintHashes) ->
+                hintSweepPlanner.tell(new HintSweepPlanner.CrackHintsMessage(charset, hintHashes, numRegistrants, numWorkers, observedHashesPerSecond), self()));
+
+        // Records without hints can be cracked right away
+        for (StudentCrackingWorkLog workLog : workLogsWithoutHints)
+            fullPasswordReady(workLog);
+        startFullPasswordJobs();
+    }
+
+    private void handle(HintSweepPlanner.HintsCrackedMessage message) {
+        log().info("[BatchProcessor] Aggregating {} cracked hints", message.getCrackedHints().size());
+
+        // Look up which student's password hints have been cracked
+        for (Map.Entry<SHA256Hash, Character> entry : message.getCrackedHints().entrySet()) {
+            for (StudentCrackingWorkLog workLog : hintHashToRegistry.remove(entry.getKey())) {
+                // Aggregate the results of the hint cracking process
+                workLog.potentialPasswordCharacters.remove(entry.getValue());
+                hintResolved(workLog);
+            }
         }
 
-        String passwordChars = message.getRecords().get(0).getPasswordChars();
-        if (passwordChars.length() <= 3) {
-            throw new IllegalArgumentException("Expected the password characters field to have at least 3 character");
+        startFullPasswordJobs();
+        checkBatchComplete();
+    }
+
+    private void handle(HintSweepPlanner.UncrackableHintsMessage message) {
+        // Without the hint, we do not know which character is missing, so the full password is cracked using all of them
+        for (SHA256Hash hintHash : message.getHintHashes()) {
+            for (StudentCrackingWorkLog workLog : hintHashToRegistry.remove(hintHash))
+                hintResolved(workLog);
         }
 
-        // Distribute the work among workers, so that all hints in the batch are simultaneously cracked.
-        // Each worker will iterate over all permutations of the potential hint plain texts, with a 2-character prefix
-        Set<SHA256Hash> allBatchHintHashes = message.getRecords().stream()
-                .flatMap(r -> Arrays.stream(r.getHintHashes()))
-                .collect(Collectors.toSet());
+        startFullPasswordJobs();
+        checkBatchComplete();
+    }
 
-        for (int i = 0; i < passwordChars.length(); i++) {
-            for (int j = 0; j < passwordChars.length(); j++) {
-                if (i != j) {
-                    String prefix = String.valueOf(passwordChars.charAt(i)) + passwordChars.charAt(j);
+    private void hintResolved(StudentCrackingWorkLog workLog) {
+        workLog.hintsRemainingToCrack--;
 
-                    String choices = new StringBuilder(passwordChars)
-                            .deleteCharAt(Math.max(i, j)) // Remove the latest character first,
-                            .deleteCharAt(Math.min(i, j)) // so the earliest character doesn't shift indices
-                            .toString();
+        // If all hints have been cracked, start cracking the full password!
+        if (workLog.hintsRemainingToCrack == 0) {
+            log().info("[BatchProcessor] All hints for user with ID={} (NAME={}) cracked, starting password cracking",
+                    workLog.getRecord().getId(), workLog.getRecord().getName());
 
-                    workerPool.tell(new Worker.CrackHintsBatchWorkItem(allBatchHintHashes, prefix, choices), self());
-                }
-            }
+            fullPasswordReady(workLog);
         }
+    }
+
+    private void fullPasswordReady(StudentCrackingWorkLog workLog) {
+        char[] chars = new char[workLog.getPotentialPasswordCharacters().size()];
+        int i = 0;
+        for (Character c : workLog.getPotentialPasswordCharacters())
+            chars[i++] = c;
+        Arrays.sort(chars);
 
-        pendingHintMessages = passwordChars.length() * (passwordChars.length() - 1);
+        FullPasswordSpace space = new FullPasswordSpace(new String(chars), workLog.getRecord().getPasswordLength());
+        readyWorkLogs.computeIfAbsent(space, s -> new ArrayList<>()).add(workLog);
     }
 
-    private void handle(Worker.CrackedHintsMessage message) {
-        // Tell the worker pool that this worker can now pull more work
-        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender()), self());
+    /**
+     * Starts a job for each space of the students that have become ready, which cracks all their full passwords at once.
+     * The space is split into chunks of combination indices, which are sized so that cracking a chunk takes about
+     * TARGET_CHUNK_SECONDS according to the observed hash rate.
+     */
+    private void startFullPasswordJobs() {
+        for (Map.Entry<FullPasswordSpace, List<StudentCrackingWorkLog>> entry : readyWorkLogs.entrySet()) {
+            // Passwords that have already been cracked, or are being cracked by another job, do not need to be cracked again
+            Set<SHA256Hash> fullPasswordHashes = new HashSet<>();
+            for (StudentCrackingWorkLog workLog : entry.getValue()) {
+                SHA256Hash fullPasswordHash = workLog.getRecord().getFullPasswordHash();
+                if (fullPasswordHashToRegistry.contains(fullPasswordHash) && fullPasswordHashesInJobs.add(fullPasswordHash))
+                    fullPasswordHashes.add(fullPasswordHash);
+            }
+            if (fullPasswordHashes.isEmpty())
+                continue;
 
-        pendingHintMessages--;
+            FullPasswordSpace space = entry.getKey();
+            FullPasswordJob job = new FullPasswordJob(nextFullPasswordJobId++, fullPasswordHashes);
+            fullPasswordJobs.put(job.id, job);
 
-        log().info("[BatchProcessor] Aggregating {} cracked hints", message.getCrackedHints().size());
+            log().info("[BatchProcessor] Starting full password job {} for {} passwords of length {} with characters ({})",
+                    job.id, fullPasswordHashes.size(), space.getLength(), space.getChars());
 
-        // Look up which student's password hints have been cracked
-        for (Map.Entry<SHA256Hash, Character> entry : message.getCrackedHints().entrySet()) {
-            for (StudentCrackingWorkLog workLog : hintHashToRegistry.remove(entry.getKey())) {
-                // Aggregate the results of the hint cracking process
-                workLog.potentialPasswordCharacters.remove(entry.getValue());
-                workLog.hintsRemainingToCrack--;
+            long[] fullPasswordHashWords = DigestTable.of(fullPasswordHashes).toWords();
+            long numCombinations = new CombinationCracker(space.getChars(), space.getLength()).getNumCombinations();
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, (long) (hashesPerSecond * TARGET_CHUNK_SECONDS));
 
-                // If all hints have been cracked, start cracking the full password!
-                if (workLog.hintsRemainingToCrack == 0) {
-                    log().info("[BatchProcessor] All hints for user with ID={} (NAME={}) cracked, starting password cracking",
-                            workLog.getRecord().getId(), workLog.getRecord().getName());
+            for (long startIndex = 0; startIndex < numCombinations; startIndex += chunkSize) {
+                long endIndex = Math.min(numCombinations, startIndex + chunkSize);
+                workerPool.tell(new Worker.CrackFullPasswordWorkItem(job.id, batchId, fullPasswordHashWords, space.getChars(), space.getLength(),
+                        startIndex, endIndex), self());
+                job.pendingChunks.add(startIndex);
+            }
+        }
+        readyWorkLogs.clear();
+    }
 
-                    StringBuilder potentialPasswordCharacters = new StringBuilder();
-                    for (Character c : workLog.getPotentialPasswordCharacters())
-                        potentialPasswordCharacters.append(c);
+    private void handle(Worker.CrackedFullPasswordMessage message) {
+        // Tell the worker pool that this worker can now pull more work
+        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender(), message.getJobId(), message.getStartIndex(),
+                message.getHashesPerSecond()), self());
+
+        // Only the first result of a chunk counts, since the others are the same
+        FullPasswordJob job = fullPasswordJobs.get(message.getJobId());
+        if (job == null || !job.pendingChunks.remove(message.getStartIndex()))
+            return;
+
+        if (message.getHashesPerSecond() > 0) {
+            observedHashesPerSecond = observedHashesPerSecond > 0
+                    ? HASH_RATE_SMOOTHING * message.getHashesPerSecond() + (1 - HASH_RATE_SMOOTHING) * observedHashesPerSecond
+                    : message.getHashesPerSecond();
+            hashesPerSecond = observedHashesPerSecond;
+        }
 
-                    workerPool.tell(new Worker.CrackFullPasswordWorkItem(workLog.getRecord().getFullPasswordHash(),
-                                    potentialPasswordCharacters.toString(), workLog.getRecord().getPasswordLength()), self());
+        // Results for jobs that have already finished can just be ignored
+        if (!job.finished) {
+            for (Map.Entry<SHA256Hash, String> entry : message.getFullPasswords().entrySet()) {
+                if (!job.remainingHashes.remove(entry.getKey()))
+                    continue;
+
+                log().info("[BatchProcessor] Received a cracked full password");
+
+                // Look up which student's password have been cracked
+                for (StudentCrackingWorkLog workLog : fullPasswordHashToRegistry.remove(entry.getKey())) {
+                    collector.tell(new Collector.CollectMessage(String.format(
+                            "The password of ID=%d (NAME=%s) is %s",
+                            workLog.getRecord().getId(),
+                            workLog.getRecord().getName(),
+                            entry.getValue())), self());
                 }
             }
-        }
 
-        if (fullPasswordHashToRegistry.isEmpty() && pendingHintMessages == 0) {
-            context().parent().tell(new Master.BatchCompleteMessage(), self());
+            if (job.remainingHashes.isEmpty()) {
+                // Cancel the remaining chunks of the job, since they can not contain any of its passwords anymore
+                job.finished = true;
+                if (!job.pendingChunks.isEmpty())
+                    workerPool.tell(new WorkerPool.CancelWorkMessage(job.id), self());
+            } else if (job.pendingChunks.isEmpty()) {
+                log().error("[BatchProcessor] {} full password hashes could not be cracked", job.remainingHashes.size());
+
+                job.finished = true;
+                for (SHA256Hash fullPasswordHash : job.remainingHashes)
+                    fullPasswordHashToRegistry.remove(fullPasswordHash);
+            }
         }
+
+        chunksResolved(job);
     }
 
-    private void handle(Worker.CrackedFullPasswordMessage message) {
+    private void handle(WorkerPool.WorkCancelledMessage message) {
+        FullPasswordJob job = fullPasswordJobs.get((Long) message.getJobKey());
+        if (job == null)
+            return;
+
+        job.pendingChunks.removeAll(message.getWorkItemKeys());
+        chunksResolved(job);
+    }
+
+    private void handle(WorkerPool.WorkItemSplitMessage message) {
+        // The worker pool gave a slow worker only a part of a chunk, and queued the rest of it as a chunk of its own
+        FullPasswordJob job = fullPasswordJobs.get((Long) message.getJobKey());
+        if (job != null)
+            job.pendingChunks.add((Long) message.getWorkItemKey());
+    }
+
+    private void handle(Worker.WorkItemCancelledMessage message) {
         // Tell the worker pool that this worker can now pull more work
-        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender()), self());
+        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender(), message.getJobKey(), message.getWorkItemKey()), self());
 
-        log().info("[BatchProcessor] Received a cracked full password");
+        FullPasswordJob job = fullPasswordJobs.get((Long) message.getJobKey());
+        if (job == null || !job.pendingChunks.remove((Long) message.getWorkItemKey()))
+            return;
 
-        // Look up which student's password have been cracked
-        for (StudentCrackingWorkLog workLog : fullPasswordHashToRegistry.remove(message.getFullPasswordHash())) {
-            collector.tell(new Collector.CollectMessage(String.format(
-                    "The password of ID=%d (NAME=%s) is %s",
-                    workLog.getRecord().getId(),
-                    workLog.getRecord().getName(),
-                    message.getFullPassword())), self());
-        }
+        chunksResolved(job);
+    }
 
-        // When all password have been cracked, tell the Master that the batch is finished
-        if (fullPasswordHashToRegistry.isEmpty() && pendingHintMessages == 0) {
-            context().parent().tell(new Master.BatchCompleteMessage(), self());
-        }
+    private void handle(Worker.WorkItemFailedMessage message) {
+        // The worker pool assigns the chunk again, so it stays pending
+        workerPool.tell(new WorkerPool.NotifyWorkItemFailedMessage(sender(), message.getJobKey(), message.getWorkItemKey()), self());
     }
 
+    private void chunksResolved(FullPasswordJob job) {
+        if (job.finished && job.pendingChunks.isEmpty())
+            fullPasswordJobs.remove(job.id);
+
+        checkBatchComplete();
+    }
 
+    /**
+     * When all passwords have been cracked and no more results are expected, tell the Master that the batch is finished.
+     */
+    private void checkBatchComplete() {
+        if (!batchComplete && fullPasswordHashToRegistry.isEmpty() && fullPasswordJobs.isEmpty()) {
+            batchComplete = true;
+            context().parent().tell(new Master.BatchCompleteMessage(observedHashesPerSecond), self());
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package de.hpi.ddm.actors;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Extension;
+import akka.actor.ExtensionId;
+import akka.actor.ExtensionIdProvider;
+import akka.pattern.Patterns;
+import de.hpi.ddm.algorithms.CancellationToken;
+import de.hpi.ddm.structures.DigestTable;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the hint sets of the hint sweeps on this node (actor system), so that they are only sent once per node
+ * instead of once per work item. The first worker that needs a hint set fetches it from the hint sweep planner,
+ * and all the workers of the node share the resulting (read-only) digest table afterwards.
+ *
+ * While a sweep runs, the workers receive updates about the hints that have been cracked by any worker, which are
+ * marked in the shared hint set, so that the cracking loops can stop as soon as no hints remain to be cracked.
+ *
+ * Only the most recently used hint sets are kept, since the work items of a sweep are processed close in time.
+ */
+public class HintSetRegistry implements Extension {
+    public static final Id ID = new Id();
+
+    private static final int MAX_HINT_SETS = 8;
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(30);
+
+    public static HintSetRegistry get(ActorSystem system) {
+        return ID.get(system);
+    }
+
+    public static class Id extends AbstractExtensionId<HintSetRegistry> implements ExtensionIdProvider {
+        @Override
+        public ExtensionId<? extends Extension> lookup() {
+            return ID;
+        }
+
+        @Override
+        public HintSetRegistry createExtension(ExtendedActorSystem system) {
+            return new HintSetRegistry();
+        }
+    }
+
+    /**
+     * The hints of a sweep, along with the IDs of the hints that have been cracked so far. The work items crack the
+     * hints that remain, which are kept in a separate table. That table is replaced by a smaller copy whenever hints
+     * are cracked, instead of removing them in place, since the work items running on the node read it concurrently.
+     */
+    static class HintSet {
+        private final DigestTable hintHashes;
+        private final Set<Integer> crackedIds = ConcurrentHashMap.newKeySet();
+        private volatile DigestTable remainingHintHashes;
+        // Cancelled once all hints of the set have been cracked
+        private final CancellationToken exhausted = new CancellationToken();
+
+        HintSet(DigestTable hintHashes) {
+            this.hintHashes = hintHashes;
+            this.remainingHintHashes = hintHashes;
+            if (hintHashes.isEmpty())
+                this.exhausted.cancel();
+        }
+
+        /**
+         * @return The (read-only) table of the hints that have not been cracked yet.
+         */
+        DigestTable getRemainingHintHashes() {
+            return this.remainingHintHashes;
+        }
+
+        CancellationToken getExhaustedToken() {
+            return this.exhausted;
+        }
+
+        synchronized void markCracked(long[] hintHashWords) {
+            DigestTable remaining = null;
+            for (int i = 0; i + 3 < hintHashWords.length; i += 4) {
+                int id = this.hintHashes.indexOf(hintHashWords[i], hintHashWords[i+1], hintHashWords[i+2], hintHashWords[i+3]);
+                if (id < 0 || !this.crackedIds.add(id))
+                    continue;
+
+                if (remaining == null)
+                    remaining = DigestTable.ofWords(this.remainingHintHashes.toWords());
+                remaining.remove(hintHashWords[i], hintHashWords[i+1], hintHashWords[i+2], hintHashWords[i+3]);
+            }
+
+            if (remaining != null) {
+                this.remainingHintHashes = remaining;
+                if (remaining.isEmpty())
+                    this.exhausted.cancel();
+            }
+        }
+    }
+
+    private final Map<Long, CompletableFuture<HintSet>> hintSets = new LinkedHashMap<Long, CompletableFuture<HintSet>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 2949617386224052830L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<HintSet>> eldest) {
+            return this.size() > MAX_HINT_SETS;
+        }
+    };
+
+    /**
+     * Gets the hint set of the given sweep, fetching it from the given hint sweep planner if it is not on this node yet.
+     */
+    synchronized CompletionStage<HintSet> get(long sweepId, ActorRef hintSweepPlanner) {
+        CompletableFuture<HintSet> hintSet = this.hintSets.get(sweepId);
+        if (hintSet == null) {
+            hintSet = Patterns.ask(hintSweepPlanner, new HintSweepPlanner.GetHintSetMessage(sweepId), FETCH_TIMEOUT)
+                    .thenApply(message -> new HintSet(DigestTable.ofWords(((HintSweepPlanner.HintSetMessage) message).getHintHashWords())))
+                    .toCompletableFuture();
+            this.hintSets.put(sweepId, hintSet);
+
+            // A failed (or timed out) fetch is not kept, so that the next work item of the sweep fetches it again
+            CompletableFuture<HintSet> fetch = hintSet;
+            hintSet.whenComplete((set, failure) -> {
+                if (failure != null)
+                    this.evict(sweepId, fetch);
+            });
+        }
+        return hintSet;
+    }
+
+    private synchronized void evict(long sweepId, CompletableFuture<HintSet> hintSet) {
+        this.hintSets.remove(sweepId, hintSet);
+    }
+
+    /**
+     * Marks the given hints of a sweep as cracked, if the hint set of the sweep is on this node.
+     */
+    synchronized void markCracked(long sweepId, long[] hintHashWords) {
+        CompletableFuture<HintSet> hintSet = this.hintSets.get(sweepId);
+        if (hintSet != null)
+            hintSet.thenAccept(set -> set.markCracked(hintHashWords));
+    }
+}
@@ -0,0 +1,429 @@
+package de.hpi.ddm.actors;
+
+import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans the cracking of hints per character set, across all the batches that are processed.
+ *
+ * Cracking hints requires a sweep over all permutations of the character set, which costs the same no matter how
+ * many hints are cracked by it. So, instead of each batch processor sweeping over the permutations of its batch,
+ * the batch processors send their hints here, and there is at most one running sweep per character set.
+ * The hints received while a sweep is running join the pending sweep of their character set,
+ * which starts once the running sweep has finished.
+ *
+ * The workers running work items of a sweep are updated about the hints of the sweep that have been cracked,
+ * so that they can stop as soon as all of them are.
+ *
+ * A sweep is split into work items by the prefixes of the permutations. The length of the prefixes is chosen per sweep,
+ * from the number of workers and their hash rate, as reported by the batch processors: long enough to keep all workers
+ * busy until the end of the sweep, but not so long that the work items become too short for their overhead. The work
+ * items are generated as the previous ones finish, so that only a few of them wait at the worker pool at any time.
+ */
+public class HintSweepPlanner extends AbstractLoggingActor {
+    ////////////////////////
+    // Actor Construction //
+    ////////////////////////
+
+    public static final String DEFAULT_NAME = "hintsweepplanner";
+
+    // The prefixes of the work items are made longer (i.e. n, n*(n-1), n*(n-1)*(n-2), ... work items for n characters)
+    // until there are this many work items per worker, unless they would take less than MIN_WORK_ITEM_SECONDS
+    private static final int WORK_ITEMS_PER_WORKER = 2;
+    private static final double MIN_WORK_ITEM_SECONDS = 0.1;
+    // Number of cracked hints that are remembered for later batches, the most recently used first
+    private static final int MAX_CRACKED_HINTS = 1 << 18;
+
+    public static Props props(ActorRef workerPool) {
+        return Props.create(HintSweepPlanner.class, () -> new HintSweepPlanner(workerPool));
+    }
+
+    private HintSweepPlanner(ActorRef workerPool) {
+        this.workerPool = workerPool;
+        this.workerCredit = Math.max(1, ConfigurationSingleton.get().getWorkerCredit());
+    }
+
+    ////////////////////
+    // Actor Messages //
+    ////////////////////
+
+    /**
+     * Asks for the given hints of the given character set to be cracked. The results are sent back to the sender
+     * as {@link HintsCrackedMessage}s, and the hints that can not be cracked as an {@link UncrackableHintsMessage}.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class CrackHintsMessage implements Serializable {
+        private static final long serialVersionUID = 4392761059324671840L;
+        private String charset;
+        private Set<SHA256Hash> hintHashes;
+        private int numRegistrants; // Number of workers registered with the pool (e.g. node dispatchers) when the batch was read
+        private int numWorkers; // Number of workers that run the work items of the registrants
+        private double hashesPerSecond; // Hash rate of a worker observed in the previous batches, or zero if unknown
+    }
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class HintsCrackedMessage implements Serializable {
+        private static final long serialVersionUID = -1823645230487815296L;
+        private Map<SHA256Hash, Character> crackedHints;
+    }
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class UncrackableHintsMessage implements Serializable {
+        private static final long serialVersionUID = 7201935548108370623L;
+        private Set<SHA256Hash> hintHashes;
+    }
+
+    /**
+     * Asks for the hint set of a running sweep, which the work items of the sweep only reference by the sweep ID
+     * (see {@link HintSetRegistry}).
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class GetHintSetMessage implements Serializable {
+        private static final long serialVersionUID = -3398620741125302651L;
+        private long sweepId;
+    }
+
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class HintSetMessage implements Serializable {
+        private static final long serialVersionUID = 5816029432780925117L;
+        private long sweepId;
+        private long[] hintHashWords; // See DigestTable.toWords
+    }
+
+    /**
+     * Tells the workers running work items of a sweep that the given hints of it have been cracked.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class HintsCrackedUpdateMessage implements Serializable {
+        private static final long serialVersionUID = 3079452215887392104L;
+        private long sweepId;
+        private long[] hintHashWords; // See DigestTable.toWords
+    }
+
+    /////////////////
+    // Actor State //
+    /////////////////
+
+    private final ActorRef workerPool;
+    private final int workerCredit;
+
+    // Number of registrants and workers and the hash rate of a worker, as reported with the most recent hints
+    private int numRegistrants = 1;
+    private int numWorkers = 1;
+    private double hashesPerSecond = 0;
+
+    /**
+     * A sweep over all permutations of a character set, which has been split into work items.
+     */
+    private static class Sweep {
+        final long id;
+        final String charset;
+        final Set<SHA256Hash> remainingHintHashes;
+        // Prefixes of the work items without a result, which may arrive twice for a work item (see WorkerPool)
+        final Set<String> pendingPrefixes = new HashSet<>();
+        boolean cancelled = false;
+
+        // The work items are numbered by their prefix, and generated in that order
+        final int prefixLength;
+        final long numWorkItems;
+        final int maxPendingWorkItems;
+        long nextWorkItem = 0;
+
+        Sweep(long id, String charset, Set<SHA256Hash> hintHashes, int prefixLength, int maxPendingWorkItems) {
+            this.id = id;
+            this.charset = charset;
+            this.remainingHintHashes = new HashSet<>(hintHashes);
+            this.prefixLength = prefixLength;
+            this.numWorkItems = getNumPrefixes(charset.length(), prefixLength);
+            this.maxPendingWorkItems = maxPendingWorkItems;
+        }
+
+        boolean isExhausted() {
+            return this.nextWorkItem == this.numWorkItems || this.remainingHintHashes.isEmpty() || this.cancelled;
+        }
+    }
+
+    private static class CharsetSweeps {
+        Sweep runningSweep;
+        Set<SHA256Hash> pendingHintHashes = new HashSet<>();
+    }
+
+    // Sweeps by (sorted) character set, and running sweeps by ID (which is used as the job key of their work items)
+    private final Map<String, CharsetSweeps> charsetSweeps = new HashMap<>();
+    private final Map<Long, Sweep> runningSweeps = new HashMap<>();
+    private long nextSweepId = 0;
+
+    // Hints cracked recently, and the actors waiting for the hints that have not been cracked yet. The cracked hints
+    // are only kept up to a bound, since a hint that is asked for again after it has been evicted is just swept again
+    private final Map<SHA256Hash, Character> crackedHints = new LinkedHashMap<SHA256Hash, Character>(16, 0.75f, true) {
+        private static final long serialVersionUID = -6124806915183650286L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SHA256Hash, Character> eldest) {
+            return this.size() > MAX_CRACKED_HINTS;
+        }
+    };
+    private final Map<SHA256Hash, Set<ActorRef>> requesters = new HashMap<>();
+
+    /////////////////////
+    // Actor Lifecycle //
+    /////////////////////
+
+    @Override
+    public void preStart() {
+        Reaper.watchWithDefaultReaper(this);
+    }
+
+    ////////////////////
+    // Actor Behavior //
+    ////////////////////
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(CrackHintsMessage.class, this::handle)
+                .match(GetHintSetMessage.class, this::handle)
+                .match(Worker.CrackedHintsMessage.class, this::handle)
+                .match(Worker.WorkItemCancelledMessage.class, this::handle)
+                .match(Worker.WorkItemFailedMessage.class, this::handle)
+                .match(WorkerPool.WorkCancelledMessage.class, this::handle)
+                .matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
+                .build();
+    }
+
+    private void handle(CrackHintsMessage message) {
+        numRegistrants = Math.max(1, message.getNumRegistrants());
+        numWorkers = Math.max(numRegistrants, message.getNumWorkers());
+        hashesPerSecond = message.getHashesPerSecond();
+
+        String charset = sortCharset(message.getCharset());
+        CharsetSweeps sweeps = charsetSweeps.computeIfAbsent(charset, c -> new CharsetSweeps());
+
+        Map<SHA256Hash, Character> alreadyCracked = new HashMap<>();
+        for (SHA256Hash hintHash : message.getHintHashes()) {
+            Character missingCharacter = crackedHints.get(hintHash);
+            if (missingCharacter != null) {
+                alreadyCracked.put(hintHash, missingCharacter);
+                continue;
+            }
+
+            requesters.computeIfAbsent(hintHash, h -> new HashSet<>()).add(sender());
+            if (sweeps.runningSweep == null || !sweeps.runningSweep.remainingHintHashes.contains(hintHash))
+                sweeps.pendingHintHashes.add(hintHash);
+        }
+
+        if (!alreadyCracked.isEmpty())
+            sender().tell(new HintsCrackedMessage(alreadyCracked), self());
+
+        tryStartSweep(sweeps, charset);
+    }
+
+    /**
+     * Starts a sweep over the pending hints of a character set, unless one is already running.
+     */
+    private void tryStartSweep(CharsetSweeps sweeps, String charset) {
+        if (sweeps.runningSweep != null || sweeps.pendingHintHashes.isEmpty())
+            return;
+
+        // The work items are spread over the registrants, since a node dispatcher splits its work items for its workers.
+        // Enough of them wait at the worker pool for all workers to use up their credit, plus one more each
+        int prefixLength = choosePrefixLength(charset.length(), numRegistrants, hashesPerSecond);
+        Sweep sweep = new Sweep(nextSweepId++, charset, sweeps.pendingHintHashes, prefixLength, numWorkers * (workerCredit + 1));
+        sweeps.runningSweep = sweep;
+        sweeps.pendingHintHashes = new HashSet<>();
+        runningSweeps.put(sweep.id, sweep);
+
+        log().info("[HintSweepPlanner] Starting sweep {} over charset {} for {} hints",
+                sweep.id, charset, sweep.remainingHintHashes.size());
+        log().info("[HintSweepPlanner] Sweep {} is split into {} work items of prefix length {}",
+                sweep.id, sweep.numWorkItems, prefixLength);
+
+        sendWorkItems(sweep);
+    }
+
+    /**
+     * Chooses the length of the prefixes that a sweep over a charset of the given length is split by, such that each
+     * registrant of the worker pool gets WORK_ITEMS_PER_WORKER work items, unless they would take less than
+     * MIN_WORK_ITEM_SECONDS at the given hash rate (if it is known, i.e. not zero). The prefixes are at least one
+     * character long, and leave at least one choice.
+     */
+    static int choosePrefixLength(int numChars, int numRegistrants, double hashesPerSecond) {
+        int prefixLength = Math.min(1, numChars - 1);
+        long numWorkItems = getNumPrefixes(numChars, prefixLength);
+        while (prefixLength < numChars - 1 && numWorkItems < (long) WORK_ITEMS_PER_WORKER * numRegistrants) {
+            // Each work item of the longer prefixes hashes the permutations of the remaining choices
+            double numPermutations = factorial(numChars - prefixLength - 1);
+            if (hashesPerSecond > 0 && numPermutations / hashesPerSecond < MIN_WORK_ITEM_SECONDS)
+                break;
+
+            prefixLength++;
+            numWorkItems = getNumPrefixes(numChars, prefixLength);
+        }
+        return prefixLength;
+    }
+
+    private static long getNumPrefixes(int numChars, int prefixLength) {
+        long numPrefixes = 1;
+        for (int i = 0; i < prefixLength; i++)
+            numPrefixes *= numChars - i;
+        return numPrefixes;
+    }
+
+    private static double factorial(int n) {
+        double factorial = 1;
+        for (int i = 2; i <= n; i++)
+            factorial *= i;
+        return factorial;
+    }
+
+    /**
+     * Sends the next work items of the sweep to the worker pool, as long as there are not too many pending ones already.
+     * Each work item iterates over all permutations with a given prefix.
+     */
+    private void sendWorkItems(Sweep sweep) {
+        while (!sweep.isExhausted() && sweep.pendingPrefixes.size() < sweep.maxPendingWorkItems) {
+            // The number of the work item is the index of its prefix in the order of the charset, whose digits
+            // (in a mixed radix of n, n-1, n-2, ...) are the indices of the prefix characters among the remaining choices
+            StringBuilder prefix = new StringBuilder();
+            StringBuilder choices = new StringBuilder(sweep.charset);
+            long index = sweep.nextWorkItem++;
+            long numSuffixes = sweep.numWorkItems;
+            for (int i = 0; i < sweep.prefixLength; i++) {
+                numSuffixes /= choices.length();
+                int choice = (int) (index / numSuffixes);
+                index %= numSuffixes;
+                prefix.append(choices.charAt(choice));
+                choices.deleteCharAt(choice);
+            }
+
+            workerPool.tell(new Worker.CrackHintsBatchWorkItem(sweep.id, prefix.toString(), choices.toString()), self());
+            sweep.pendingPrefixes.add(prefix.toString());
+        }
+    }
+
+    private void handle(GetHintSetMessage message) {
+        // A sweep is running as long as any of its work items is, so the hint set is there for them, except for
+        // redundant copies of the work items, which get an empty set. Nodes fetching it late only get the hints
+        // that have not been cracked yet.
+        Sweep sweep = runningSweeps.get(message.getSweepId());
+        long[] hintHashWords = sweep != null ? DigestTable.of(sweep.remainingHintHashes).toWords() : new long[0];
+        sender().tell(new HintSetMessage(message.getSweepId(), hintHashWords), self());
+    }
+
+    private void handle(Worker.CrackedHintsMessage message) {
+        // Tell the worker pool that this worker can now pull more work
+        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender(), message.getSweepId(), message.getPrefix()), self());
+
+        // Only the first result of a work item counts, since the others are the same
+        Sweep sweep = runningSweeps.get(message.getSweepId());
+        if (sweep == null || !sweep.pendingPrefixes.remove(message.getPrefix()))
+            return;
+
+        // Send the cracked hints to the actors waiting for them
+        Map<ActorRef, Map<SHA256Hash, Character>> results = new HashMap<>();
+        List<SHA256Hash> newlyCracked = new ArrayList<>();
+        for (Map.Entry<SHA256Hash, Character> entry : message.getCrackedHints().entrySet()) {
+            crackedHints.put(entry.getKey(), entry.getValue());
+            if (sweep.remainingHintHashes.remove(entry.getKey()))
+                newlyCracked.add(entry.getKey());
+
+            Set<ActorRef> waiting = requesters.remove(entry.getKey());
+            if (waiting != null) {
+                for (ActorRef requester : waiting)
+                    results.computeIfAbsent(requester, r -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+            }
+        }
+        results.forEach((requester, hints) -> requester.tell(new HintsCrackedMessage(hints), self()));
+
+        // Once all hints of the sweep are cracked, the remaining work items of the sweep can not find anything new
+        if (sweep.remainingHintHashes.isEmpty() && !sweep.pendingPrefixes.isEmpty() && !sweep.cancelled) {
+            sweep.cancelled = true;
+            workerPool.tell(new WorkerPool.CancelWorkMessage(sweep.id), self());
+        } else if (!newlyCracked.isEmpty() && !sweep.pendingPrefixes.isEmpty()) {
+            // Otherwise, the running work items can skip the hints cracked by this one
+            HintsCrackedUpdateMessage update = new HintsCrackedUpdateMessage(sweep.id, DigestTable.of(newlyCracked).toWords());
+            workerPool.tell(new WorkerPool.NotifyJobWorkersMessage(sweep.id, update), self());
+        }
+
+        sendWorkItems(sweep);
+        checkSweepComplete(sweep);
+    }
+
+    private void handle(Worker.WorkItemCancelledMessage message) {
+        // Tell the worker pool that this worker can now pull more work
+        workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender(), message.getJobKey(), message.getWorkItemKey()), self());
+
+        Sweep sweep = runningSweeps.get((Long) message.getJobKey());
+        if (sweep == null || !sweep.pendingPrefixes.remove((String) message.getWorkItemKey()))
+            return;
+        sendWorkItems(sweep);
+        checkSweepComplete(sweep);
+    }
+
+    private void handle(Worker.WorkItemFailedMessage message) {
+        // The worker pool assigns the work item again, so it stays pending
+        workerPool.tell(new WorkerPool.NotifyWorkItemFailedMessage(sender(), message.getJobKey(), message.getWorkItemKey()), self());
+    }
+
+    private void handle(WorkerPool.WorkCancelledMessage message) {
+        // The sweep might have completed already, if its remaining work items finished before the cancellation
+        Sweep sweep = runningSweeps.get((Long) message.getJobKey());
+        if (sweep == null)
+            return;
+
+        sweep.pendingPrefixes.removeAll(message.getWorkItemKeys());
+        checkSweepComplete(sweep);
+    }
+
+    /**
+     * When all work items of a sweep have finished, the hints that have not been cracked by it can not be cracked,
+     * and the next sweep of the character set can start.
+     */
+    private void checkSweepComplete(Sweep sweep) {
+        if (!sweep.pendingPrefixes.isEmpty() || !sweep.isExhausted())
+            return;
+
+        runningSweeps.remove(sweep.id);
+        CharsetSweeps sweeps = charsetSweeps.get(sweep.charset);
+        sweeps.runningSweep = null;
+
+        if (!sweep.remainingHintHashes.isEmpty()) {
+            log().error("[HintSweepPlanner] {} hints could not be cracked with charset {}", sweep.remainingHintHashes.size(), sweep.charset);
+
+            Map<ActorRef, Set<SHA256Hash>> uncrackable = new HashMap<>();
+            for (SHA256Hash hintHash : sweep.remainingHintHashes) {
+                Set<ActorRef> waiting = requesters.remove(hintHash);
+                if (waiting != null) {
+                    for (ActorRef requester : waiting)
+                        uncrackable.computeIfAbsent(requester, r -> new HashSet<>()).add(hintHash);
+                }
+            }
+            uncrackable.forEach((requester, hints) -> requester.tell(new UncrackableHintsMessage(hints), self()));
+        }
+
+        tryStartSweep(sweeps, sweep.charset);
+    }
+
+    private static String sortCharset(String charset) {
+        char[] chars = charset.toCharArray();
+        Arrays.sort(chars);
+        return new String(chars);
+    }
+}
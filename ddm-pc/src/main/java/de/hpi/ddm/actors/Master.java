@@ -1,14 +1,18 @@
 package de.hpi.ddm.actors;
 
 import akka.actor.*;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
 import de.hpi.ddm.structures.StudentRecord;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Master extends AbstractLoggingActor {
 
@@ -26,7 +30,10 @@ public class Master extends AbstractLoggingActor {
 		this.reader = reader;
 		this.collector = collector;
 		this.workerPool = context().actorOf(WorkerPool.props(), WorkerPool.DEFAULT_NAME);
-		this.workers = new ArrayList<>();
+		this.hintSweepPlanner = context().actorOf(HintSweepPlanner.props(this.workerPool), HintSweepPlanner.DEFAULT_NAME);
+		this.workers = new HashMap<>();
+		this.batchProcessors = new HashSet<>();
+		this.maxActiveBatches = Math.max(1, ConfigurationSingleton.get().getMaxActiveBatches());
 	}
 
 	////////////////////
@@ -44,14 +51,17 @@ public class Master extends AbstractLoggingActor {
 		private List<StudentRecord> records;
 	}
 
-	@Data
+	@Data @NoArgsConstructor @AllArgsConstructor
 	static class BatchCompleteMessage implements Serializable {
 		private static final long serialVersionUID = 1235602981358319429L;
+		private double hashesPerSecond; // Hash rate of a worker observed by the batch processor, or zero if none
 	}
 
-	@Data @NoArgsConstructor
+	@Data @NoArgsConstructor @AllArgsConstructor
 	static class RegistrationMessage implements Serializable {
 		private static final long serialVersionUID = 3303081601659723997L;
+		private int numWorkers; // Number of workers that run the work items of the registering actor (see NodeDispatcher)
+		private double hashesPerSecond; // Hash rate of the registering actor, measured by a short calibration
 	}
 
 	/////////////////
@@ -61,9 +71,16 @@ public class Master extends AbstractLoggingActor {
 	private final ActorRef reader;
 	private final ActorRef collector;
 	private final ActorRef workerPool;
-	private final List<ActorRef> workers;
+	private final ActorRef hintSweepPlanner;
+	private final Map<ActorRef, Integer> workers; // Number of workers of each registered actor
 
-	private ActorRef batchProcessor;
+	// The batches are processed by a bounded window of concurrently active batch processors, which share the worker pool
+	private final Set<ActorRef> batchProcessors;
+	private final int maxActiveBatches;
+	private boolean readPending = false;
+	private boolean endOfInput = false;
+	private double hashesPerSecond;
+	private long nextBatchId = 0;
 
 	private long startTime;
 
@@ -74,6 +91,9 @@ public class Master extends AbstractLoggingActor {
 	@Override
 	public void preStart() {
 		Reaper.watchWithDefaultReaper(this);
+		
+		if (ConfigurationSingleton.get().isLocalIngestion())
+			this.reader.tell(new Reader.UseWorkerPoolMessage(this.workerPool), this.self());
 	}
 
 	////////////////////
@@ -95,7 +115,7 @@ public class Master extends AbstractLoggingActor {
 	private void handle(StartMessage message) {
 		this.startTime = System.currentTimeMillis();
 
-		this.reader.tell(new Reader.ReadMessage(), this.self());
+		this.requestBatch();
 	}
 
 	private void handle(BatchMessage message) {
@@ -104,43 +124,73 @@ public class Master extends AbstractLoggingActor {
 		// 1. If we distribute the batches early, we might not need to hold the entire input data in memory. //
 		// 2. If we process the batches early, we can achieve latency hiding. /////////////////////////////////
 		///////////////////////////////////////////////////////////////////////////////////////////////////////
+		this.readPending = false;
+
 		if (message.getRecords().isEmpty()) {
-			this.log().info("[Master] Empty batch received (end of program), starting shutdown");
-			this.collector.tell(new Collector.PrintMessage(), this.self());
-			this.terminate();
+			this.log().info("[Master] Empty batch received (end of input), waiting for {} active batches", this.batchProcessors.size());
+			this.endOfInput = true;
+			this.tryTerminate();
 			return;
 		}
 
 		this.log().info("[Master] Starting a new batch processor");
 
 		// Create a new batch processor and forward the batch to it
-		this.batchProcessor = context().actorOf(BatchProcessor.props(collector, workerPool));
-		this.batchProcessor.tell(message, self());
-
-		// this.collector.tell(new Collector.CollectMessage("Processed batch of size " + message.getLines().size()), this.self());
-		// this.reader.tell(new Reader.ReadMessage(), this.self());
+		int numWorkers = this.workers.values().stream().mapToInt(Integer::intValue).sum();
+		ActorRef batchProcessor = context().actorOf(BatchProcessor.props(collector, workerPool, hintSweepPlanner, nextBatchId++,
+				this.workers.size(), numWorkers, hashesPerSecond));
+		batchProcessor.tell(message, self());
+		this.batchProcessors.add(batchProcessor);
+
+		// Read the next batch while this one is processed, if the window has space for it
+		this.requestBatch();
 	}
 
 	private void handle(BatchCompleteMessage message) {
-		this.log().info("[Master] Current batch completed, trying to read a new batch");
+		this.log().info("[Master] A batch completed, trying to read a new batch");
+
+		// Remember the observed hash rate, so that the next batch processor does not need to measure it again
+		this.hashesPerSecond = message.getHashesPerSecond();
+
+		// Kill the batch processor that handled the batch (we will create a new one)
+		this.sender().tell(PoisonPill.getInstance(), ActorRef.noSender());
+		this.batchProcessors.remove(this.sender());
 
-		// Kill the batch processor that handled the current batch (we will create a new one)
-		this.batchProcessor.tell(PoisonPill.getInstance(), ActorRef.noSender());
-		this.batchProcessor = null;
+		if (this.endOfInput)
+			this.tryTerminate();
+		else
+			this.requestBatch();
+	}
+
+	/**
+	 * Requests more work from the reader, unless a request is already pending or the window of active batches is full.
+	 */
+	private void requestBatch() {
+		if (this.readPending || this.endOfInput || this.batchProcessors.size() >= this.maxActiveBatches)
+			return;
 
-		// Request more work from the reader
-		this.reader.tell(new Reader.ReadMessage(), self());
+		this.readPending = true;
+		this.reader.tell(new Reader.ReadMessage(), this.self());
+	}
+
+	private void tryTerminate() {
+		if (!this.batchProcessors.isEmpty())
+			return;
+
+		this.log().info("[Master] All batches completed (end of program), starting shutdown");
+		this.collector.tell(new Collector.PrintMessage(), this.self());
+		this.terminate();
 	}
 
 	private void terminate() {
 		this.reader.tell(PoisonPill.getInstance(), ActorRef.noSender());
 		this.collector.tell(PoisonPill.getInstance(), ActorRef.noSender());
 		this.workerPool.tell(PoisonPill.getInstance(), ActorRef.noSender());
-		if (this.batchProcessor != null) {
-			this.batchProcessor.tell(PoisonPill.getInstance(), ActorRef.noSender());
-		}
+		this.hintSweepPlanner.tell(PoisonPill.getInstance(), ActorRef.noSender());
+		for (ActorRef batchProcessor : this.batchProcessors)
+			batchProcessor.tell(PoisonPill.getInstance(), ActorRef.noSender());
 		
-		for (ActorRef worker : this.workers) {
+		for (ActorRef worker : this.workers.keySet()) {
 			this.context().unwatch(worker);
 			worker.tell(PoisonPill.getInstance(), ActorRef.noSender());
 		}
@@ -153,11 +203,11 @@ public class Master extends AbstractLoggingActor {
 
 	private void handle(RegistrationMessage message) {
 		this.context().watch(this.sender());
-		this.workers.add(this.sender());
+		this.workers.put(this.sender(), message.getNumWorkers());
 
-		workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(sender()), self());
+		workerPool.tell(new WorkerPool.RegisterWorkerMessage(sender(), message.getNumWorkers(), message.getHashesPerSecond()), self());
 
-		this.log().info("Registered {}", this.sender());
+		this.log().info("Registered {} with {} workers at {} hashes per second", this.sender(), message.getNumWorkers(), (long) message.getHashesPerSecond());
 	}
 	
 	private void handle(Terminated message) {
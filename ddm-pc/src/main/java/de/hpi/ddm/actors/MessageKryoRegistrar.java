@@ -0,0 +1,234 @@
+package de.hpi.ddm.actors;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.twitter.chill.IKryoRegistrar;
+import de.hpi.ddm.serialization.MessageKryoInstantiator;
+import de.hpi.ddm.serialization.SHA256HashSerializer;
+import de.hpi.ddm.serialization.StudentRecordSerializer;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registers the messages of the actors with fixed IDs (see {@link MessageKryoInstantiator}). The messages that are
+ * sent constantly between the nodes, i.e. the work items and their results, get hand-written serializers,
+ * while the rare ones only get an ID and are serialized field by field.
+ *
+ * The registrar is part of this package, since the messages are only visible to the actors.
+ * New messages must be appended with new IDs, so that the IDs of the existing ones do not change.
+ */
+public class MessageKryoRegistrar implements IKryoRegistrar {
+    private static final long serialVersionUID = 6788324533736900129L;
+
+    private static final int FIRST_ID = MessageKryoInstantiator.FIRST_REGISTRATION_ID + 10;
+
+    @Override
+    public void apply(Kryo kryo) {
+        int id = FIRST_ID;
+
+        // Work items and their results
+        kryo.register(Worker.CrackHintsBatchWorkItem.class, new CrackHintsBatchWorkItemSerializer(), id++);
+        kryo.register(Worker.CrackedHintsMessage.class, new CrackedHintsMessageSerializer(), id++);
+        kryo.register(Worker.CrackFullPasswordWorkItem.class, new CrackFullPasswordWorkItemSerializer(), id++);
+        kryo.register(Worker.CrackedFullPasswordMessage.class, new CrackedFullPasswordMessageSerializer(), id++);
+        kryo.register(Worker.CancelJobMessage.class, id++);
+        kryo.register(Worker.WorkItemCancelledMessage.class, id++);
+
+        // Hint sets of the sweeps
+        kryo.register(HintSweepPlanner.GetHintSetMessage.class, id++);
+        kryo.register(HintSweepPlanner.HintSetMessage.class, new HintSetMessageSerializer(), id++);
+        kryo.register(HintSweepPlanner.HintsCrackedUpdateMessage.class, new HintsCrackedUpdateMessageSerializer(), id++);
+
+        // Batches and the coordination of the actors
+        kryo.register(Master.BatchMessage.class, new BatchMessageSerializer(), id++);
+        kryo.register(Master.BatchCompleteMessage.class, id++);
+        kryo.register(Master.RegistrationMessage.class, id++);
+        kryo.register(Master.StartMessage.class, id++);
+        kryo.register(Reader.ReadMessage.class, id++);
+        kryo.register(Collector.CollectMessage.class, id++);
+        kryo.register(Collector.PrintMessage.class, id++);
+        kryo.register(WorkerPool.NotifyWorkerAvailableMessage.class, id++);
+        kryo.register(WorkerPool.CancelWorkMessage.class, id++);
+        kryo.register(WorkerPool.WorkCancelledMessage.class, id++);
+
+        // Chunks of the input that are scanned on the nodes
+        kryo.register(Worker.ScanChunkWorkItem.class, id++);
+        kryo.register(Reader.ChunkScannedMessage.class, new ChunkScannedMessageSerializer(), id++);
+
+        // Registration of the workers and node dispatchers
+        kryo.register(WorkerPool.RegisterWorkerMessage.class, id++);
+        kryo.register(WorkerPool.WorkItemSplitMessage.class, id++);
+
+        // Work items that could not be finished
+        kryo.register(Worker.WorkItemFailedMessage.class, id++);
+        kryo.register(WorkerPool.NotifyWorkItemFailedMessage.class, id++);
+    }
+
+    private static final SHA256HashSerializer HASH_SERIALIZER = new SHA256HashSerializer();
+
+    private static void writeWords(Output output, long[] words) {
+        output.writeVarInt(words.length, true);
+        output.writeLongs(words);
+    }
+
+    private static long[] readWords(Input input) {
+        return input.readLongs(input.readVarInt(true));
+    }
+
+    static class CrackHintsBatchWorkItemSerializer extends Serializer<Worker.CrackHintsBatchWorkItem> {
+        @Override
+        public void write(Kryo kryo, Output output, Worker.CrackHintsBatchWorkItem workItem) {
+            output.writeVarLong(workItem.getSweepId(), true);
+            output.writeString(workItem.getPrefix());
+            output.writeString(workItem.getChoices());
+        }
+
+        @Override
+        public Worker.CrackHintsBatchWorkItem read(Kryo kryo, Input input, Class<Worker.CrackHintsBatchWorkItem> type) {
+            return new Worker.CrackHintsBatchWorkItem(input.readVarLong(true), input.readString(), input.readString());
+        }
+    }
+
+    static class CrackedHintsMessageSerializer extends Serializer<Worker.CrackedHintsMessage> {
+        @Override
+        public void write(Kryo kryo, Output output, Worker.CrackedHintsMessage message) {
+            output.writeVarLong(message.getSweepId(), true);
+            output.writeString(message.getPrefix());
+            output.writeVarInt(message.getCrackedHints().size(), true);
+            for (Map.Entry<SHA256Hash, Character> entry : message.getCrackedHints().entrySet()) {
+                HASH_SERIALIZER.write(kryo, output, entry.getKey());
+                output.writeChar(entry.getValue());
+            }
+        }
+
+        @Override
+        public Worker.CrackedHintsMessage read(Kryo kryo, Input input, Class<Worker.CrackedHintsMessage> type) {
+            long sweepId = input.readVarLong(true);
+            String prefix = input.readString();
+            int size = input.readVarInt(true);
+            Map<SHA256Hash, Character> crackedHints = new HashMap<>(2 * size);
+            for (int i = 0; i < size; i++)
+                crackedHints.put(HASH_SERIALIZER.read(kryo, input, SHA256Hash.class), input.readChar());
+            return new Worker.CrackedHintsMessage(sweepId, prefix, crackedHints);
+        }
+    }
+
+    static class CrackFullPasswordWorkItemSerializer extends Serializer<Worker.CrackFullPasswordWorkItem> {
+        @Override
+        public void write(Kryo kryo, Output output, Worker.CrackFullPasswordWorkItem workItem) {
+            output.writeVarLong(workItem.getJobId(), true);
+            output.writeVarLong(workItem.getBatchId(), true);
+            writeWords(output, workItem.getFullPasswordHashWords());
+            output.writeString(workItem.getFullPasswordChars());
+            output.writeVarInt(workItem.getFullPasswordLength(), true);
+            output.writeVarLong(workItem.getStartIndex(), true);
+            output.writeVarLong(workItem.getEndIndex(), true);
+        }
+
+        @Override
+        public Worker.CrackFullPasswordWorkItem read(Kryo kryo, Input input, Class<Worker.CrackFullPasswordWorkItem> type) {
+            return new Worker.CrackFullPasswordWorkItem(input.readVarLong(true), input.readVarLong(true), readWords(input), input.readString(),
+                    input.readVarInt(true), input.readVarLong(true), input.readVarLong(true));
+        }
+    }
+
+    static class CrackedFullPasswordMessageSerializer extends Serializer<Worker.CrackedFullPasswordMessage> {
+        @Override
+        public void write(Kryo kryo, Output output, Worker.CrackedFullPasswordMessage message) {
+            output.writeVarLong(message.getJobId(), true);
+            output.writeVarLong(message.getStartIndex(), true);
+            output.writeVarInt(message.getFullPasswords().size(), true);
+            for (Map.Entry<SHA256Hash, String> entry : message.getFullPasswords().entrySet()) {
+                HASH_SERIALIZER.write(kryo, output, entry.getKey());
+                output.writeString(entry.getValue());
+            }
+            output.writeDouble(message.getHashesPerSecond());
+        }
+
+        @Override
+        public Worker.CrackedFullPasswordMessage read(Kryo kryo, Input input, Class<Worker.CrackedFullPasswordMessage> type) {
+            long jobId = input.readVarLong(true);
+            long startIndex = input.readVarLong(true);
+            int size = input.readVarInt(true);
+            Map<SHA256Hash, String> fullPasswords = new HashMap<>(2 * size);
+            for (int i = 0; i < size; i++)
+                fullPasswords.put(HASH_SERIALIZER.read(kryo, input, SHA256Hash.class), input.readString());
+            return new Worker.CrackedFullPasswordMessage(jobId, startIndex, fullPasswords, input.readDouble());
+        }
+    }
+
+    static class HintSetMessageSerializer extends Serializer<HintSweepPlanner.HintSetMessage> {
+        @Override
+        public void write(Kryo kryo, Output output, HintSweepPlanner.HintSetMessage message) {
+            output.writeVarLong(message.getSweepId(), true);
+            writeWords(output, message.getHintHashWords());
+        }
+
+        @Override
+        public HintSweepPlanner.HintSetMessage read(Kryo kryo, Input input, Class<HintSweepPlanner.HintSetMessage> type) {
+            return new HintSweepPlanner.HintSetMessage(input.readVarLong(true), readWords(input));
+        }
+    }
+
+    static class HintsCrackedUpdateMessageSerializer extends Serializer<HintSweepPlanner.HintsCrackedUpdateMessage> {
+        @Override
+        public void write(Kryo kryo, Output output, HintSweepPlanner.HintsCrackedUpdateMessage message) {
+            output.writeVarLong(message.getSweepId(), true);
+            writeWords(output, message.getHintHashWords());
+        }
+
+        @Override
+        public HintSweepPlanner.HintsCrackedUpdateMessage read(Kryo kryo, Input input, Class<HintSweepPlanner.HintsCrackedUpdateMessage> type) {
+            return new HintSweepPlanner.HintsCrackedUpdateMessage(input.readVarLong(true), readWords(input));
+        }
+    }
+
+    static class BatchMessageSerializer extends Serializer<Master.BatchMessage> {
+        private final StudentRecordSerializer recordSerializer = new StudentRecordSerializer();
+
+        @Override
+        public void write(Kryo kryo, Output output, Master.BatchMessage message) {
+            output.writeVarInt(message.getRecords().size(), true);
+            for (StudentRecord record : message.getRecords())
+                this.recordSerializer.write(kryo, output, record);
+        }
+
+        @Override
+        public Master.BatchMessage read(Kryo kryo, Input input, Class<Master.BatchMessage> type) {
+            int size = input.readVarInt(true);
+            List<StudentRecord> records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                records.add(this.recordSerializer.read(kryo, input, StudentRecord.class));
+            return new Master.BatchMessage(records);
+        }
+    }
+
+    static class ChunkScannedMessageSerializer extends Serializer<Reader.ChunkScannedMessage> {
+        private final StudentRecordSerializer recordSerializer = new StudentRecordSerializer();
+
+        @Override
+        public void write(Kryo kryo, Output output, Reader.ChunkScannedMessage message) {
+            output.writeVarInt(message.getIndex(), true);
+            output.writeVarInt(message.getRecords().size(), true);
+            for (StudentRecord record : message.getRecords())
+                this.recordSerializer.write(kryo, output, record);
+        }
+
+        @Override
+        public Reader.ChunkScannedMessage read(Kryo kryo, Input input, Class<Reader.ChunkScannedMessage> type) {
+            int index = input.readVarInt(true);
+            int size = input.readVarInt(true);
+            List<StudentRecord> records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                records.add(this.recordSerializer.read(kryo, input, StudentRecord.class));
+            return new Reader.ChunkScannedMessage(index, records);
+        }
+    }
+}
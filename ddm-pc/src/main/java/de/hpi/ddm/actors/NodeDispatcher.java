@@ -0,0 +1,357 @@
+package de.hpi.ddm.actors;
+
+import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSelection;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import akka.cluster.ClusterEvent.CurrentClusterState;
+import akka.cluster.ClusterEvent.MemberRemoved;
+import akka.cluster.ClusterEvent.MemberUp;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import akka.event.LoggingAdapter;
+import de.hpi.ddm.MasterSystem;
+import de.hpi.ddm.structures.SHA256Hash;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+
+/**
+ * Runs the work items of the master's worker pool on the workers of its node, in place of the workers.
+ *
+ * The dispatcher registers with the master as a single worker, which holds as many work items at once as all of its
+ * workers. It splits each of these coarse work items into parts for its workers (the permutations of a hint prefix
+ * by their next character, a full password range into sub-ranges), and sends a single result back once all of them
+ * have finished. So, the messages between the master and the nodes grow with the number of nodes, instead of the
+ * number of workers. The parts are handed to the workers one at a time, since they are local anyway.
+ */
+public class NodeDispatcher extends AbstractLoggingActor {
+    ////////////////////////
+    // Actor Construction //
+    ////////////////////////
+
+    public static final String DEFAULT_NAME = "dispatcher";
+
+    public static Props props(int numWorkers) {
+        return Props.create(NodeDispatcher.class, () -> new NodeDispatcher(numWorkers));
+    }
+
+    private NodeDispatcher(int numWorkers) {
+        this.cluster = Cluster.get(this.context().system());
+        this.numWorkers = Math.max(1, numWorkers);
+    }
+
+    /////////////////
+    // Actor State //
+    /////////////////
+
+    private Member masterSystem;
+    private final Cluster cluster;
+    private final int numWorkers;
+
+    /**
+     * A work item received from the worker pool, whose parts run on the workers of this node.
+     */
+    private static class Dispatch {
+        final Object workItem;
+        final ActorRef sender;
+        final List<Object> results = new ArrayList<>();
+        int pendingParts;
+        double busySeconds = 0; // Time that the workers spent on the finished full password parts
+        boolean cancelled = false;
+
+        Dispatch(Object workItem, ActorRef sender) {
+            this.workItem = workItem;
+            this.sender = sender;
+        }
+    }
+
+    private static class Part {
+        final Dispatch dispatch;
+        final Object workItem;
+
+        Part(Dispatch dispatch, Object workItem) {
+            this.dispatch = dispatch;
+            this.workItem = workItem;
+        }
+    }
+
+    private final List<Dispatch> dispatches = new ArrayList<>();
+    private final Queue<Part> pendingParts = new LinkedList<>();
+    private final Map<ActorRef, Part> runningParts = new HashMap<>();
+    private final Queue<ActorRef> idleWorkers = new LinkedList<>();
+
+    /////////////////////
+    // Actor Lifecycle //
+    /////////////////////
+
+    @Override
+    public void preStart() {
+        Reaper.watchWithDefaultReaper(this);
+
+        for (int i = 0; i < this.numWorkers; i++)
+            this.idleWorkers.add(this.context().actorOf(Worker.props(), Worker.DEFAULT_NAME + i));
+
+        this.cluster.subscribe(this.self(), MemberUp.class, MemberRemoved.class);
+    }
+
+    @Override
+    public void postStop() {
+        this.cluster.unsubscribe(this.self());
+    }
+
+    ////////////////////
+    // Actor Behavior //
+    ////////////////////
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(CurrentClusterState.class, this::handle)
+                .match(MemberUp.class, this::handle)
+                .match(MemberRemoved.class, this::handle)
+                .match(Worker.CrackHintsBatchWorkItem.class, this::dispatch)
+                .match(Worker.CrackFullPasswordWorkItem.class, this::dispatch)
+                .match(Worker.ScanChunkWorkItem.class, this::dispatch)
+                .match(Worker.CancelJobMessage.class, this::handle)
+                .match(HintSweepPlanner.HintsCrackedUpdateMessage.class, this::handle)
+                .match(HintSweepPlanner.GetHintSetMessage.class, this::handle)
+                .match(Worker.CrackedHintsMessage.class, this::complete)
+                .match(Worker.CrackedFullPasswordMessage.class, this::complete)
+                .match(Worker.WorkItemCancelledMessage.class, this::complete)
+                .match(Worker.WorkItemFailedMessage.class, this::handle)
+                .match(Reader.ChunkScannedMessage.class, this::complete)
+                .matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
+                .build();
+    }
+
+    private void handle(CurrentClusterState message) {
+        message.getMembers().forEach(member -> {
+            if (member.status().equals(MemberStatus.up()))
+                this.register(member);
+        });
+    }
+
+    private void handle(MemberUp message) {
+        this.register(message.member());
+    }
+
+    private void register(Member member) {
+        if ((this.masterSystem == null) && member.hasRole(MasterSystem.MASTER_ROLE)) {
+            this.masterSystem = member;
+
+            // The dispatcher reports the hash rate of the whole node, which its workers share, or none if the calibration failed
+            ActorSelection master = this.getContext().actorSelection(member.address() + "/user/" + Master.DEFAULT_NAME);
+            ActorRef self = this.self();
+            LoggingAdapter log = this.log();
+            int numWorkers = this.numWorkers;
+            Worker.measureHashesPerSecond().whenComplete((hashesPerSecond, failure) -> {
+                if (failure != null)
+                    log.error(failure, "[NodeDispatcher] Measuring the hash rate failed, so the dispatcher registers without it");
+                master.tell(new Master.RegistrationMessage(numWorkers, failure == null ? hashesPerSecond : 0), self);
+            });
+        }
+    }
+
+    private void handle(MemberRemoved message) {
+        if (message.member().equals(this.masterSystem))
+            this.self().tell(PoisonPill.getInstance(), ActorRef.noSender());
+    }
+
+    private void dispatch(Object workItem) {
+        Dispatch dispatch = new Dispatch(workItem, this.sender());
+        List<Object> parts = this.split(workItem);
+        dispatch.pendingParts = parts.size();
+        this.dispatches.add(dispatch);
+
+        for (Object part : parts)
+            this.pendingParts.add(new Part(dispatch, part));
+        this.tryStartParts();
+    }
+
+    private List<Object> split(Object workItem) {
+        List<Object> parts = new ArrayList<>();
+        if (workItem instanceof Worker.CrackHintsBatchWorkItem) {
+            // The permutations with the prefix are split by their next character
+            Worker.CrackHintsBatchWorkItem item = (Worker.CrackHintsBatchWorkItem) workItem;
+            String prefix = item.getPrefix() != null ? item.getPrefix() : "";
+            String choices = item.getChoices();
+            if (choices.length() <= 1) {
+                parts.add(item);
+                return parts;
+            }
+            for (int i = 0; i < choices.length(); i++) {
+                String remainingChoices = new StringBuilder(choices).deleteCharAt(i).toString();
+                parts.add(new Worker.CrackHintsBatchWorkItem(item.getSweepId(), prefix + choices.charAt(i), remainingChoices));
+            }
+        } else if (workItem instanceof Worker.CrackFullPasswordWorkItem) {
+            // The range is split evenly over the workers
+            Worker.CrackFullPasswordWorkItem item = (Worker.CrackFullPasswordWorkItem) workItem;
+            long size = item.getEndIndex() - item.getStartIndex();
+            int numParts = (int) Math.max(1, Math.min(this.numWorkers, size));
+            for (int i = 0; i < numParts; i++) {
+                long start = item.getStartIndex() + size * i / numParts;
+                long end = item.getStartIndex() + size * (i + 1) / numParts;
+                parts.add(new Worker.CrackFullPasswordWorkItem(item.getJobId(), item.getBatchId(), item.getFullPasswordHashWords(),
+                        item.getFullPasswordChars(), item.getFullPasswordLength(), start, end));
+            }
+        } else {
+            parts.add(workItem);
+        }
+        return parts;
+    }
+
+    private void tryStartParts() {
+        while (!this.idleWorkers.isEmpty() && !this.pendingParts.isEmpty()) {
+            ActorRef worker = this.idleWorkers.remove();
+            Part part = this.pendingParts.remove();
+            this.runningParts.put(worker, part);
+            worker.tell(part.workItem, this.self());
+        }
+    }
+
+    private void handle(Worker.CancelJobMessage message) {
+        for (Dispatch dispatch : new ArrayList<>(this.dispatches)) {
+            if (!this.isCancelledBy(dispatch, message))
+                continue;
+            dispatch.cancelled = true;
+
+            // The queued parts are cancelled right away, and the running ones once their workers have stopped
+            Iterator<Part> iterator = this.pendingParts.iterator();
+            while (iterator.hasNext()) {
+                Part part = iterator.next();
+                if (part.dispatch == dispatch) {
+                    iterator.remove();
+                    WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) part.workItem;
+                    this.addResult(part, new Worker.WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey()));
+                }
+            }
+            for (Map.Entry<ActorRef, Part> entry : this.runningParts.entrySet()) {
+                if (entry.getValue().dispatch == dispatch) {
+                    WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) entry.getValue().workItem;
+                    entry.getKey().tell(new Worker.CancelJobMessage(workItem.getJobKey(), workItem.getWorkItemKey()), this.self());
+                }
+            }
+        }
+    }
+
+    private boolean isCancelledBy(Dispatch dispatch, Worker.CancelJobMessage message) {
+        if (!dispatch.sender.equals(this.sender()) || !(dispatch.workItem instanceof WorkerPool.CancellableWorkItem))
+            return false;
+
+        WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) dispatch.workItem;
+        return workItem.getJobKey().equals(message.getJobKey()) &&
+                (message.getWorkItemKey() == null || Objects.equals(workItem.getWorkItemKey(), message.getWorkItemKey()));
+    }
+
+    private void handle(HintSweepPlanner.HintsCrackedUpdateMessage message) {
+        // The hint set is shared by all workers of this node, so the dispatcher can mark the cracked hints for them
+        HintSetRegistry.get(this.context().system()).markCracked(message.getSweepId(), message.getHintHashWords());
+    }
+
+    private void handle(HintSweepPlanner.GetHintSetMessage message) {
+        // The workers fetch the hint set of a sweep from the sender of their work item, which is the dispatcher
+        for (Dispatch dispatch : this.dispatches) {
+            if (dispatch.workItem instanceof Worker.CrackHintsBatchWorkItem &&
+                    ((Worker.CrackHintsBatchWorkItem) dispatch.workItem).getSweepId() == message.getSweepId()) {
+                dispatch.sender.forward(message, this.context());
+                return;
+            }
+        }
+        this.sender().tell(new HintSweepPlanner.HintSetMessage(message.getSweepId(), new long[0]), this.self());
+    }
+
+    private void complete(Object result) {
+        Part part = this.runningParts.remove(this.sender());
+        if (part == null)
+            return;
+
+        this.idleWorkers.add(this.sender());
+
+        // The workers report the rate at which they scanned their part, from which their busy time follows
+        if (result instanceof Worker.CrackedFullPasswordMessage) {
+            double hashesPerSecond = ((Worker.CrackedFullPasswordMessage) result).getHashesPerSecond();
+            Worker.CrackFullPasswordWorkItem workItem = (Worker.CrackFullPasswordWorkItem) part.workItem;
+            if (hashesPerSecond > 0)
+                part.dispatch.busySeconds += (workItem.getEndIndex() - workItem.getStartIndex()) / hashesPerSecond;
+        }
+
+        this.addResult(part, result);
+        this.tryStartParts();
+    }
+
+    private void handle(Worker.WorkItemFailedMessage message) {
+        Part part = this.runningParts.remove(this.sender());
+        if (part == null)
+            return;
+        this.idleWorkers.add(this.sender());
+
+        // The part is run again on the next idle worker, unless its work item has been cancelled in the meantime
+        if (part.dispatch.cancelled) {
+            WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) part.workItem;
+            this.addResult(part, new Worker.WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey()));
+        } else {
+            this.pendingParts.add(part);
+        }
+        this.tryStartParts();
+    }
+
+    private void addResult(Part part, Object result) {
+        Dispatch dispatch = part.dispatch;
+        dispatch.results.add(result);
+        if (--dispatch.pendingParts > 0)
+            return;
+
+        // Send back the aggregated result (implicitly also asks for more work)
+        this.dispatches.remove(dispatch);
+        dispatch.sender.tell(this.aggregate(dispatch), this.self());
+    }
+
+    private Object aggregate(Dispatch dispatch) {
+        boolean cancelled = dispatch.results.stream().anyMatch(result -> result instanceof Worker.WorkItemCancelledMessage);
+
+        if (dispatch.workItem instanceof Worker.CrackHintsBatchWorkItem) {
+            Worker.CrackHintsBatchWorkItem workItem = (Worker.CrackHintsBatchWorkItem) dispatch.workItem;
+            if (cancelled)
+                return new Worker.WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey());
+
+            Map<SHA256Hash, Character> crackedHints = new HashMap<>();
+            for (Object result : dispatch.results)
+                crackedHints.putAll(((Worker.CrackedHintsMessage) result).getCrackedHints());
+            return new Worker.CrackedHintsMessage(workItem.getSweepId(), workItem.getPrefix(), crackedHints);
+        }
+
+        if (dispatch.workItem instanceof Worker.CrackFullPasswordWorkItem) {
+            Worker.CrackFullPasswordWorkItem workItem = (Worker.CrackFullPasswordWorkItem) dispatch.workItem;
+            Map<SHA256Hash, String> fullPasswords = new HashMap<>();
+            boolean fullyScanned = !cancelled;
+            for (Object result : dispatch.results) {
+                if (result instanceof Worker.CrackedFullPasswordMessage) {
+                    Worker.CrackedFullPasswordMessage message = (Worker.CrackedFullPasswordMessage) result;
+                    fullPasswords.putAll(message.getFullPasswords());
+                    fullyScanned &= message.getHashesPerSecond() > 0;
+                }
+            }
+            if (fullPasswords.isEmpty() && cancelled)
+                return new Worker.WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey());
+
+            // The hash rate of the whole node, i.e. the rate of its workers while they ran the parts, times the number
+            // of workers. Measuring the wall time instead would count the time the parts waited behind other dispatches
+            double hashesPerSecond = 0;
+            if (fullyScanned && dispatch.busySeconds > 0)
+                hashesPerSecond = this.numWorkers * (workItem.getEndIndex() - workItem.getStartIndex()) / dispatch.busySeconds;
+            return new Worker.CrackedFullPasswordMessage(workItem.getJobId(), workItem.getStartIndex(), fullPasswords, hashesPerSecond);
+        }
+
+        // Work items that are not split have a single result
+        return dispatch.results.get(0);
+    }
+}
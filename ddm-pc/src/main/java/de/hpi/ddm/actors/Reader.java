@@ -1,18 +1,53 @@
 package de.hpi.ddm.actors;
 
 import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
 import akka.actor.Props;
-import com.opencsv.CSVReader;
+import akka.actor.Status;
+import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
+import akka.stream.ActorMaterializer;
+import akka.stream.Attributes;
+import akka.stream.javadsl.Compression;
+import akka.stream.javadsl.FileIO;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.SinkQueueWithCancel;
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
+import com.opencsv.CSVParser;
 import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.configuration.DatasetDescriptor;
 import de.hpi.ddm.configuration.DatasetDescriptorSingleton;
+import de.hpi.ddm.io.BinaryStudentDataset;
+import de.hpi.ddm.io.StudentRecordScanner;
 import de.hpi.ddm.structures.SHA256Hash;
 import de.hpi.ddm.structures.StudentRecord;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Reader extends AbstractLoggingActor {
 
@@ -34,17 +69,93 @@ public class Reader extends AbstractLoggingActor {
 	static class ReadMessage implements Serializable {
 		private static final long serialVersionUID = -3254147511955012292L;
 	}
+
+	/**
+	 * Lets the workers scan the chunks of the input file (see {@link Worker.ScanChunkWorkItem}), if the master
+	 * ingests the input locally on all nodes.
+	 */
+	@Data @NoArgsConstructor @AllArgsConstructor
+	static class UseWorkerPoolMessage implements Serializable {
+		private static final long serialVersionUID = -8040625335236916409L;
+		private ActorRef workerPool;
+	}
+
+	@Data @NoArgsConstructor @AllArgsConstructor
+	static class ChunkScannedMessage implements Serializable {
+		private static final long serialVersionUID = 5230771626880410613L;
+		private int index;
+		private List<StudentRecord> records;
+	}
 	
 	/////////////////
 	// Actor State //
 	/////////////////
 	
-	private CSVReader reader;
+	// Maximum length of a line in the input, when it is read by the stream pipeline
+	private static final int MAX_LINE_LENGTH = 1 << 16;
+	
+	// Maximum size of the chunks of decompressed bytes, when a compressed input is read by the stream pipeline
+	private static final int MAX_DECOMPRESSED_CHUNK_SIZE = 1 << 16;
+	
+	// The records are scanned from the memory-mapped dataset file
+	private StudentRecordScanner scanner;
+	
+	// Or they are decoded from the memory-mapped binary copy of the dataset
+	private BinaryStudentDataset binaryDataset;
+	
+	private int nextRecordIndex;
 	
 	private int bufferSize;
 	
 	private List<StudentRecord> buffer;
 	
+	// Alternatively, the batches are pulled from a stream pipeline, which reads and parses them ahead of the requests.
+	// Since a queue sink only allows one pending pull, each pull is chained after the previous one
+	private SinkQueueWithCancel<List<StudentRecord>> batchQueue;
+	
+	private CompletionStage<?> lastPull = CompletableFuture.completedFuture(null);
+	
+	// Alternatively, the file is split into chunks aligned to line breaks, which are scanned concurrently on a dedicated
+	// thread pool or by the workers of all nodes. The records of the chunks are emitted in the order of the file
+	// or in the order that the chunks are scanned
+	private static final long CHUNK_SIZE = 1L << 22;
+	
+	// The records of a chunk scanned by a worker are sent back in a single message, which must not exceed the maximum
+	// frame size of the remoting (256 KiB by default); the binary records take about half of the space of their text
+	private static final long WORKER_CHUNK_SIZE = 1L << 18;
+	
+	private long chunkSize;
+	
+	private boolean chunkedScanning;
+	
+	private int chunkParallelism;
+	
+	private ExecutorService chunkPool;
+	
+	private ActorRef workerPool;
+	
+	private boolean unorderedBatches;
+	
+	private long fileSize;
+	
+	private long nextChunkStart;
+	
+	private int nextChunkIndex;
+	
+	private int scanningChunks;
+	
+	// Scanned chunks that wait for their predecessors to be scanned (only in order)
+	private final Map<Integer, List<StudentRecord>> scannedChunks = new HashMap<>();
+	
+	private int nextReadyChunkIndex;
+	
+	// Scanned chunks whose records are emitted with the next batches
+	private final Deque<Iterator<StudentRecord>> readyChunks = new ArrayDeque<>();
+	
+	private int readyRecords;
+	
+	private final Queue<ActorRef> requesters = new ArrayDeque<>();
+	
 	/////////////////////
 	// Actor Lifecycle //
 	/////////////////////
@@ -53,8 +164,44 @@ public class Reader extends AbstractLoggingActor {
 	public void preStart() throws Exception {
 		Reaper.watchWithDefaultReaper(this);
 		
-		this.reader = DatasetDescriptorSingleton.get().createCSVReader();
 		this.bufferSize = ConfigurationSingleton.get().getBufferSize();
+		
+		String binaryDatasetDirectory = ConfigurationSingleton.get().getBinaryDatasetDirectory();
+		if (binaryDatasetDirectory != null) {
+			this.binaryDataset = BinaryStudentDataset.getOrConvert(Paths.get(binaryDatasetDirectory), DatasetDescriptorSingleton.get());
+			this.buffer = new ArrayList<>(this.bufferSize);
+			this.read();
+			return;
+		}
+		
+		if (ConfigurationSingleton.get().isStreamReader()) {
+			this.batchQueue = this.createBatchStream();
+			return;
+		}
+		
+		int readerThreads = ConfigurationSingleton.get().getReaderThreads();
+		boolean chunkedScanning = readerThreads > 0 || ConfigurationSingleton.get().isLocalIngestion();
+		if (chunkedScanning && DatasetDescriptorSingleton.get().isCompressed()) {
+			this.log().warning("A compressed input cannot be split into chunks, so it is scanned sequentially.");
+			chunkedScanning = false;
+		}
+		
+		if (chunkedScanning) {
+			this.chunkedScanning = true;
+			this.chunkParallelism = readerThreads > 0 ? readerThreads : Runtime.getRuntime().availableProcessors();
+			this.unorderedBatches = ConfigurationSingleton.get().isUnorderedBatches();
+			this.fileSize = Files.size(DatasetDescriptorSingleton.get().getDatasetFile());
+			this.chunkSize = ConfigurationSingleton.get().isLocalIngestion() ? WORKER_CHUNK_SIZE : CHUNK_SIZE;
+			
+			// With local ingestion, the scanning starts once the master hands over its worker pool
+			if (!ConfigurationSingleton.get().isLocalIngestion()) {
+				this.chunkPool = Executors.newFixedThreadPool(this.chunkParallelism);
+				this.scanChunks();
+			}
+			return;
+		}
+		
+		this.scanner = DatasetDescriptorSingleton.get().createStudentRecordScanner();
 		this.buffer = new ArrayList<>(this.bufferSize);
 		
 		this.read();
@@ -62,7 +209,12 @@ public class Reader extends AbstractLoggingActor {
 
 	@Override
 	public void postStop() throws Exception {
-		this.reader.close();
+		if (this.batchQueue != null)
+			this.batchQueue.cancel();
+		if (this.scanner != null)
+			this.scanner.close();
+		if (this.chunkPool != null)
+			this.chunkPool.shutdownNow();
 	}
 
 	////////////////////
@@ -73,25 +225,214 @@ public class Reader extends AbstractLoggingActor {
 	public Receive createReceive() {
 		return receiveBuilder()
 				.match(ReadMessage.class, this::handle)
+				.match(UseWorkerPoolMessage.class, this::handle)
+				.match(ChunkScannedMessage.class, this::handle)
+				.match(Worker.WorkItemFailedMessage.class, this::handle)
+				.match(Status.Failure.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
 
 	private void handle(ReadMessage message) throws Exception {
+		if (this.batchQueue != null) {
+			this.pull(this.sender());
+			return;
+		}
+		
+		if (this.chunkedScanning) {
+			this.requesters.add(this.sender());
+			this.emitBatches();
+			this.scanChunks();
+			return;
+		}
+		
 		this.sender().tell(new Master.BatchMessage(new ArrayList<>(this.buffer)), this.self());
 		
 		this.read();
 	}
 	
+	private void handle(UseWorkerPoolMessage message) {
+		this.workerPool = message.getWorkerPool();
+		this.scanChunks();
+	}
+	
+	private void handle(ChunkScannedMessage message) {
+		this.scanningChunks--;
+		
+		// A chunk scanned by a worker implicitly asks for more work, like the results of the other work items
+		if (this.workerPool != null)
+			this.workerPool.tell(new WorkerPool.NotifyWorkerAvailableMessage(this.sender()), this.self());
+		
+		if (this.unorderedBatches) {
+			this.addReadyChunk(message.getRecords());
+		} else {
+			// A chunk is ready once all of its predecessors are
+			this.scannedChunks.put(message.getIndex(), message.getRecords());
+			List<StudentRecord> records;
+			while ((records = this.scannedChunks.remove(this.nextReadyChunkIndex)) != null) {
+				this.addReadyChunk(records);
+				this.nextReadyChunkIndex++;
+			}
+		}
+		
+		this.emitBatches();
+		this.scanChunks();
+	}
+	
+	private void handle(Worker.WorkItemFailedMessage message) {
+		// The worker pool assigns the chunk again, so it is still being scanned
+		this.workerPool.tell(new WorkerPool.NotifyWorkItemFailedMessage(this.sender(), null, null), this.self());
+	}
+	
+	private void handle(Status.Failure message) {
+		throw new RuntimeException("Scanning a chunk of the input failed", message.cause());
+	}
+	
+	private void addReadyChunk(List<StudentRecord> records) {
+		this.readyChunks.add(records.iterator());
+		this.readyRecords += records.size();
+	}
+	
+	/**
+	 * Starts scanning the next chunks of the file. At most twice as many chunks as can be scanned in parallel are
+	 * scanned or wait for their predecessors, and the next chunks are only started while few chunks are ready or their
+	 * records do not fill a batch. This way, the reader stays ahead of the requests of the master without holding the
+	 * entire input in memory.
+	 */
+	private void scanChunks() {
+		if (this.chunkPool == null && this.workerPool == null)
+			return;
+		
+		DatasetDescriptor descriptor = DatasetDescriptorSingleton.get();
+		
+		while (this.nextChunkStart < this.fileSize
+				&& this.scanningChunks + this.scannedChunks.size() < 2 * this.chunkParallelism
+				&& (this.readyChunks.size() < this.chunkParallelism || this.readyRecords < this.bufferSize)) {
+			int index = this.nextChunkIndex++;
+			long start = this.nextChunkStart;
+			long end = Math.min(start + this.chunkSize, this.fileSize);
+			this.nextChunkStart = end;
+			this.scanningChunks++;
+			
+			if (this.workerPool != null) {
+				// The workers scan the chunk from the dataset file of their own node
+				this.workerPool.tell(new Worker.ScanChunkWorkItem(index, start, end), this.self());
+				continue;
+			}
+			
+			CompletableFuture<ChunkScannedMessage> chunk = CompletableFuture.supplyAsync(
+					() -> new ChunkScannedMessage(index, scanChunk(descriptor, start, end)), this.chunkPool);
+			Patterns.pipe(chunk, this.context().dispatcher()).to(this.self());
+		}
+	}
+	
+	static List<StudentRecord> scanChunk(DatasetDescriptor descriptor, long start, long end) {
+		List<StudentRecord> records = new ArrayList<>();
+		try (StudentRecordScanner scanner = descriptor.createStudentRecordScanner(start, end)) {
+			StudentRecord record;
+			while ((record = scanner.next()) != null)
+				records.add(record);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return records;
+	}
+	
+	/**
+	 * Answers the pending requests with batches of the ready records. A batch is only smaller than the buffer size
+	 * at the end of the input, which is again reported as an empty batch.
+	 */
+	private void emitBatches() {
+		boolean endOfInput = this.nextChunkStart >= this.fileSize && this.scanningChunks == 0 && this.scannedChunks.isEmpty();
+		
+		while (!this.requesters.isEmpty() && (this.readyRecords >= this.bufferSize || endOfInput)) {
+			List<StudentRecord> batch = new ArrayList<>(Math.min(this.bufferSize, this.readyRecords));
+			while (batch.size() < this.bufferSize && !this.readyChunks.isEmpty()) {
+				Iterator<StudentRecord> chunk = this.readyChunks.peek();
+				while (batch.size() < this.bufferSize && chunk.hasNext())
+					batch.add(chunk.next());
+				if (!chunk.hasNext())
+					this.readyChunks.poll();
+			}
+			this.readyRecords -= batch.size();
+			
+			this.requesters.poll().tell(new Master.BatchMessage(batch), this.self());
+		}
+	}
+	
+	private void pull(ActorRef requester) {
+		// At the end of the input, the queue returns no batch, which is reported as an empty batch like in the actor mode.
+		// If reading the input fails (e.g. a malformed line), the input also ends there, since the failed stream
+		// can not continue; otherwise, the master would wait for the batch forever.
+		SinkQueueWithCancel<List<StudentRecord>> batchQueue = this.batchQueue;
+		LoggingAdapter log = this.log();
+		CompletionStage<Master.BatchMessage> batch = this.lastPull
+				.thenCompose(previous -> batchQueue.pull())
+				.thenApply(records -> new Master.BatchMessage(records.orElse(Collections.emptyList())))
+				.exceptionally(failure -> {
+					log.error(failure, "Reading the input failed, so the input ends here");
+					return new Master.BatchMessage(Collections.emptyList());
+				});
+		
+		this.lastPull = batch;
+		Patterns.pipe(batch, this.context().dispatcher()).to(requester, this.self());
+	}
+	
+	/**
+	 * Creates a stream pipeline, which splits the input file into lines, groups them into batches and parses the
+	 * batches in parallel (keeping their order). The pipeline is driven by the demand of the queue sink,
+	 * so it only reads a bounded number of batches ahead of the requests of the master.
+	 * A compressed input is decompressed in a separate stage of the pipeline, so that it runs concurrently to the parsing.
+	 * Note that, unlike the CSV reader, the pipeline does not support quoted values that span multiple lines.
+	 */
+	private SinkQueueWithCancel<List<StudentRecord>> createBatchStream() {
+		DatasetDescriptor descriptor = DatasetDescriptorSingleton.get();
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		Executor executor = this.context().dispatcher();
+		
+		Source<ByteString, ?> input = FileIO.fromPath(descriptor.getDatasetFile());
+		if (descriptor.isCompressed())
+			input = input.via(Compression.gunzip(MAX_DECOMPRESSED_CHUNK_SIZE)).async();
+		
+		return input
+				.via(Framing.delimiter(ByteString.fromString("\n"), MAX_LINE_LENGTH, FramingTruncation.ALLOW))
+				.map(bytes -> bytes.decodeString(descriptor.getCharset()).replace("\r", ""))
+				.drop(descriptor.isFileHasHeader() ? 1 : 0)
+				.filter(line -> !line.trim().isEmpty())
+				.grouped(this.bufferSize)
+				.mapAsync(parallelism, lines -> CompletableFuture.supplyAsync(
+						() -> parseStudentRecords(descriptor.createCSVParser(), lines), executor))
+				.runWith(Sink.<List<StudentRecord>>queue().withAttributes(Attributes.inputBuffer(1, 1)),
+						ActorMaterializer.create(this.context()));
+	}
+	
+	private static List<StudentRecord> parseStudentRecords(CSVParser parser, List<String> lines) {
+		List<StudentRecord> records = new ArrayList<>(lines.size());
+		try {
+			for (String line : lines)
+				records.add(parseStudentRecord(parser.parseLine(line)));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return records;
+	}
+	
 	private void read() throws Exception {
 		this.buffer.clear();
 		
-		String[] line;
-		while ((this.buffer.size() < this.bufferSize) && ((line = this.reader.readNext()) != null))
-			this.buffer.add(parseStudentRecord(line));
+		StudentRecord record;
+		while ((this.buffer.size() < this.bufferSize) && ((record = this.nextRecord()) != null))
+			this.buffer.add(record);
+	}
+	
+	private StudentRecord nextRecord() throws IOException {
+		if (this.binaryDataset == null)
+			return this.scanner.next();
+		
+		return this.nextRecordIndex < this.binaryDataset.size() ? this.binaryDataset.get(this.nextRecordIndex++) : null;
 	}
 
-	private StudentRecord parseStudentRecord(String[] line) {
+	private static StudentRecord parseStudentRecord(String[] line) {
 		if (line.length < 5) {
 			throw new IllegalArgumentException("A student record line must have at least 5 fields.");
 		}
@@ -2,25 +2,43 @@ package de.hpi.ddm.actors;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
+import akka.actor.ActorSelection;
 import akka.actor.PoisonPill;
 import akka.actor.Props;
+import akka.actor.Status;
 import akka.cluster.Cluster;
 import akka.cluster.ClusterEvent.CurrentClusterState;
 import akka.cluster.ClusterEvent.MemberRemoved;
 import akka.cluster.ClusterEvent.MemberUp;
 import akka.cluster.Member;
 import akka.cluster.MemberStatus;
+import akka.event.LoggingAdapter;
+import akka.pattern.Patterns;
 import de.hpi.ddm.MasterSystem;
+import de.hpi.ddm.algorithms.CancellationToken;
 import de.hpi.ddm.algorithms.CombinationCracker;
 import de.hpi.ddm.algorithms.HintPermutationCracker;
+import de.hpi.ddm.algorithms.HintPermutationIndex;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
+import de.hpi.ddm.configuration.DatasetDescriptorSingleton;
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
 
 public class Worker extends AbstractLoggingActor {
 
@@ -30,6 +48,11 @@ public class Worker extends AbstractLoggingActor {
 	
 	public static final String DEFAULT_NAME = "worker";
 
+	// Combinations hashed to measure the hash rate that is reported when registering with the master
+	private static final String CALIBRATION_CHARS = "ABCDEFGHIJK";
+	private static final int CALIBRATION_LENGTH = 10;
+	private static final long CALIBRATION_COMBINATIONS = 1 << 20;
+
 	public static Props props() {
 		return Props.create(Worker.class);
 	}
@@ -43,34 +66,164 @@ public class Worker extends AbstractLoggingActor {
 	////////////////////
 
 	@Data @AllArgsConstructor @NoArgsConstructor
-	static class CrackHintsBatchWorkItem implements Serializable {
+	static class CrackHintsBatchWorkItem implements Serializable, WorkerPool.CancellableWorkItem, WorkerPool.PrioritizedWorkItem {
 		private static final long serialVersionUID = -416499721297254929L;
 
-		private Set<SHA256Hash> hintHashes;
+		// All work items of a sweep over the permutations of a charset belong to the same job, and share the same
+		// hint set, which is fetched by the sweep ID from the sender of the work item (see HintSetRegistry)
+		private long sweepId;
 		private String prefix;
 		private String choices;
+
+		@Override
+		public Object getJobKey() {
+			return this.sweepId;
+		}
+
+		@Override
+		public Object getWorkItemKey() {
+			return this.prefix;
+		}
+
+		@Override
+		public int getPriorityClass() {
+			return WorkerPool.HINT_PRIORITY;
+		}
+
+		@Override
+		public long getOrder() {
+			// Older sweeps hold the hints of older batches
+			return this.sweepId;
+		}
 	}
 
 	@Data @AllArgsConstructor @NoArgsConstructor
-	static class CrackFullPasswordWorkItem implements Serializable {
+	static class CrackFullPasswordWorkItem implements Serializable, WorkerPool.DivisibleWorkItem, WorkerPool.PrioritizedWorkItem {
 		private static final long serialVersionUID = -7708112313610425523L;
 
-		private SHA256Hash fullPasswordHash;
+		// All work items of a job crack the same full password hashes, which share their possible characters and length
+		private long jobId;
+		private long batchId; // Number of the batch of the job, in the order the batches were read
+		private long[] fullPasswordHashWords; // See DigestTable.toWords
 		private String fullPasswordChars;
 		private int fullPasswordLength;
+		// Range of combination indices to try (see CombinationCracker)
+		private long startIndex;
+		private long endIndex;
+
+		@Override
+		public Object getJobKey() {
+			return this.jobId;
+		}
+
+		@Override
+		public Object getWorkItemKey() {
+			return this.startIndex;
+		}
+
+		@Override
+		public long getSize() {
+			return this.endIndex - this.startIndex;
+		}
+
+		@Override
+		public CrackFullPasswordWorkItem[] split(long size) {
+			long splitIndex = this.startIndex + size;
+			return new CrackFullPasswordWorkItem[] {
+					new CrackFullPasswordWorkItem(this.jobId, this.batchId, this.fullPasswordHashWords, this.fullPasswordChars,
+							this.fullPasswordLength, this.startIndex, splitIndex),
+					new CrackFullPasswordWorkItem(this.jobId, this.batchId, this.fullPasswordHashWords, this.fullPasswordChars,
+							this.fullPasswordLength, splitIndex, this.endIndex)
+			};
+		}
+
+		@Override
+		public int getPriorityClass() {
+			return WorkerPool.FULL_PASSWORD_PRIORITY;
+		}
+
+		@Override
+		public long getOrder() {
+			return this.batchId;
+		}
+	}
+
+	/**
+	 * Asks the worker to scan the records in a byte range of the dataset file of its node (see StudentRecordScanner),
+	 * which are sent back with a {@link Reader.ChunkScannedMessage}.
+	 */
+	@Data @AllArgsConstructor @NoArgsConstructor
+	static class ScanChunkWorkItem implements Serializable, WorkerPool.PrioritizedWorkItem {
+		private static final long serialVersionUID = 4412937601829640123L;
+		private int index;
+		private long start;
+		private long end;
+
+		@Override
+		public int getPriorityClass() {
+			return WorkerPool.SCAN_CHUNK_PRIORITY;
+		}
+
+		@Override
+		public long getOrder() {
+			return this.index;
+		}
 	}
 
 	@Data @NoArgsConstructor @AllArgsConstructor
 	static class CrackedHintsMessage implements Serializable {
 		private static final long serialVersionUID = 206938995923980746L;
+		private long sweepId;
+		private String prefix; // Key of the work item within the sweep
 		private Map<SHA256Hash, Character> crackedHints;
 	}
 
 	@Data @NoArgsConstructor @AllArgsConstructor
 	static class CrackedFullPasswordMessage implements Serializable {
 		private static final long serialVersionUID = -4803956548142547242L;
-		private SHA256Hash fullPasswordHash;
-		private String fullPassword;
+		private long jobId;
+		private long startIndex; // Key of the work item within the job
+		private Map<SHA256Hash, String> fullPasswords; // Only the full passwords in the range of the work item
+		private double hashesPerSecond; // Measured hash rate of the worker, or zero if the range was not fully scanned
+	}
+
+	/**
+	 * Asks the worker to stop the work items of the given job that it received from the sender of this message,
+	 * including the one it is currently running, or only the work item with the given key if it is not null.
+	 */
+	@Data @NoArgsConstructor @AllArgsConstructor
+	static class CancelJobMessage implements Serializable {
+		private static final long serialVersionUID = 5184431937526010921L;
+		private Object jobKey;
+		private Object workItemKey;
+	}
+
+	/**
+	 * Sent instead of the result of a work item that has been stopped due to a {@link CancelJobMessage}
+	 * (implicitly also asks for more work).
+	 */
+	@Data @NoArgsConstructor @AllArgsConstructor
+	static class WorkItemCancelledMessage implements Serializable {
+		private static final long serialVersionUID = -2960310485437734162L;
+		private Object jobKey;
+		private Object workItemKey;
+	}
+
+	/**
+	 * Sent instead of the result of a work item whose cracking failed, so that the worker pool assigns it again
+	 * (implicitly also asks for more work). The keys are null for work items that are not cancellable.
+	 */
+	@Data @NoArgsConstructor @AllArgsConstructor
+	static class WorkItemFailedMessage implements Serializable {
+		private static final long serialVersionUID = 8617340522618094032L;
+		private Object jobKey;
+		private Object workItemKey;
+	}
+
+	// Sent by the worker to itself when the cracking of a work item has finished, with the message for its sender
+	@Data @AllArgsConstructor
+	private static class WorkItemDoneMessage {
+		private Object result;
 	}
 
 	/////////////////
@@ -79,6 +232,17 @@ public class Worker extends AbstractLoggingActor {
 
 	private Member masterSystem;
 	private final Cluster cluster;
+
+	@AllArgsConstructor
+	private static class PendingWorkItem {
+		private final Object workItem;
+		private final ActorRef sender;
+	}
+
+	// The cracking runs outside of the actor, so that the worker can still receive cancellations while it is busy
+	private final Queue<PendingWorkItem> pendingWorkItems = new LinkedList<>();
+	private PendingWorkItem runningWorkItem;
+	private CancellationToken runningCancellationToken;
 	
 	/////////////////////
 	// Actor Lifecycle //
@@ -96,6 +260,20 @@ public class Worker extends AbstractLoggingActor {
 		this.cluster.unsubscribe(this.self());
 	}
 
+	@Override
+	public void preRestart(Throwable reason, Optional<Object> message) throws Exception {
+		// The restarted worker starts without work items, so the ones it holds are handed back to be assigned again
+		if (this.runningWorkItem != null) {
+			this.runningCancellationToken.cancel();
+			this.fail(this.runningWorkItem);
+		}
+		for (PendingWorkItem item : this.pendingWorkItems)
+			this.fail(item);
+		this.pendingWorkItems.clear();
+
+		super.preRestart(reason, message);
+	}
+
 	////////////////////
 	// Actor Behavior //
 	////////////////////
@@ -106,8 +284,13 @@ public class Worker extends AbstractLoggingActor {
 				.match(CurrentClusterState.class, this::handle)
 				.match(MemberUp.class, this::handle)
 				.match(MemberRemoved.class, this::handle)
-				.match(Worker.CrackHintsBatchWorkItem.class, this::handle)
-				.match(Worker.CrackFullPasswordWorkItem.class, this::handle)
+				.match(Worker.CrackHintsBatchWorkItem.class, this::enqueue)
+				.match(Worker.CrackFullPasswordWorkItem.class, this::enqueue)
+				.match(Worker.ScanChunkWorkItem.class, this::enqueue)
+				.match(CancelJobMessage.class, this::handle)
+				.match(HintSweepPlanner.HintsCrackedUpdateMessage.class, this::handle)
+				.match(WorkItemDoneMessage.class, this::handle)
+				.match(Status.Failure.class, this::handle)
 				.matchAny(object -> this.log().info("Received unknown message: \"{}\"", object.toString()))
 				.build();
 	}
@@ -127,9 +310,21 @@ public class Worker extends AbstractLoggingActor {
 		if ((this.masterSystem == null) && member.hasRole(MasterSystem.MASTER_ROLE)) {
 			this.masterSystem = member;
 			
-			this.getContext()
-				.actorSelection(member.address() + "/user/" + Master.DEFAULT_NAME)
-				.tell(new Master.RegistrationMessage(), this.self());
+			// The workers of a node dispatcher get their work items from it, which registers in their place
+			if (ConfigurationSingleton.get().isNodeDispatcher())
+				return;
+			
+			// The worker reports its share of the hash rate of the node, since the workers of the node run side by side.
+			// If the calibration failed, it registers without a rate, which the worker pool treats as unknown
+			ActorSelection master = this.getContext().actorSelection(member.address() + "/user/" + Master.DEFAULT_NAME);
+			ActorRef self = this.self();
+			LoggingAdapter log = this.log();
+			int numWorkers = Math.max(1, ConfigurationSingleton.get().getNumWorkers());
+			measureHashesPerSecond().whenComplete((hashesPerSecond, failure) -> {
+				if (failure != null)
+					log.error(failure, "[Worker] Measuring the hash rate failed, so the worker registers without it");
+				master.tell(new Master.RegistrationMessage(1, failure == null ? hashesPerSecond / numWorkers : 0), self);
+			});
 		}
 	}
 	
@@ -138,30 +333,181 @@ public class Worker extends AbstractLoggingActor {
 			this.self().tell(PoisonPill.getInstance(), ActorRef.noSender());
 	}
 
-	private void handle(Worker.CrackHintsBatchWorkItem workItem) {
-		log().info("[Worker] Trying to crack {} hint hashes, starting with choices {} and prefix {}",
-				workItem.getHintHashes().size(), workItem.getChoices(), workItem.getPrefix());
+	private void enqueue(Object workItem) {
+		this.pendingWorkItems.add(new PendingWorkItem(workItem, this.sender()));
+		this.tryStartNextWorkItem();
+	}
 
-		// Crack the hints in this range
-		Map<SHA256Hash, Character> crackedHints =
-				new HintPermutationCracker(workItem.getChoices(), workItem.getPrefix()).crack(workItem.getHintHashes());
+	private void handle(CancelJobMessage message) {
+		// Queued work items of the job are acknowledged right away, while the running one is acknowledged
+		// once its cracking loop notices the cancellation
+		this.pendingWorkItems.removeIf(item -> {
+			if (!this.isCancelledBy(item, message))
+				return false;
+			WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) item.workItem;
+			item.sender.tell(new WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey()), this.self());
+			return true;
+		});
 
-		log().info("[Worker] Cracked {} hint hashes, starting with choices {} and prefix {}",
-				crackedHints.size(), workItem.getChoices(), workItem.getPrefix());
+		if (this.runningWorkItem != null && this.isCancelledBy(this.runningWorkItem, message))
+			this.runningCancellationToken.cancel();
+	}
 
-		// Send back the result (implicitly also asks for more work)
-		sender().tell(new CrackedHintsMessage(crackedHints), self());
+	private void handle(HintSweepPlanner.HintsCrackedUpdateMessage message) {
+		// The hint set is shared by all workers of this node, so any of them can mark the cracked hints in it
+		HintSetRegistry.get(this.context().system()).markCracked(message.getSweepId(), message.getHintHashWords());
 	}
 
-	private void handle(Worker.CrackFullPasswordWorkItem message) {
-		log().info("[Worker] Possible characters for the full password are: ({})", message.getFullPasswordChars());
+	private boolean isCancelledBy(PendingWorkItem item, CancelJobMessage message) {
+		if (!item.sender.equals(this.sender()) || !(item.workItem instanceof WorkerPool.CancellableWorkItem))
+			return false;
 
-		// Crack the full password
-		String fullPassword = new CombinationCracker(message.getFullPasswordChars(), message.getFullPasswordLength()).crack(message.getFullPasswordHash());
+		WorkerPool.CancellableWorkItem workItem = (WorkerPool.CancellableWorkItem) item.workItem;
+		return workItem.getJobKey().equals(message.getJobKey()) &&
+				(message.getWorkItemKey() == null || Objects.equals(workItem.getWorkItemKey(), message.getWorkItemKey()));
+	}
 
-		log().info("[Worker] Full password cracked: ({})", fullPassword);
+	private void tryStartNextWorkItem() {
+		if (this.runningWorkItem != null || this.pendingWorkItems.isEmpty())
+			return;
+
+		PendingWorkItem item = this.pendingWorkItems.remove();
+		CancellationToken cancellationToken = new CancellationToken();
+		this.runningWorkItem = item;
+		this.runningCancellationToken = cancellationToken;
+
+		CompletionStage<WorkItemDoneMessage> result;
+		if (item.workItem instanceof CrackHintsBatchWorkItem) {
+			CrackHintsBatchWorkItem workItem = (CrackHintsBatchWorkItem) item.workItem;
+			this.log().info("[Worker] Trying to crack the hints of sweep {}, starting with choices {} and prefix {}",
+					workItem.getSweepId(), workItem.getChoices(), workItem.getPrefix());
+
+			result = HintSetRegistry.get(this.context().system()).get(workItem.getSweepId(), item.sender)
+					.thenApplyAsync(hintSet -> {
+						try {
+							return crack(workItem, hintSet, cancellationToken);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}, ForkJoinPool.commonPool());
+		} else if (item.workItem instanceof ScanChunkWorkItem) {
+			ScanChunkWorkItem workItem = (ScanChunkWorkItem) item.workItem;
+			this.log().info("[Worker] Scanning the records in the byte range [{}, {}) of the dataset", workItem.getStart(), workItem.getEnd());
+
+			result = CompletableFuture.supplyAsync(() -> new WorkItemDoneMessage(new Reader.ChunkScannedMessage(workItem.getIndex(),
+					Reader.scanChunk(DatasetDescriptorSingleton.get(), workItem.getStart(), workItem.getEnd()))), ForkJoinPool.commonPool());
+		} else {
+			CrackFullPasswordWorkItem workItem = (CrackFullPasswordWorkItem) item.workItem;
+			this.log().info("[Worker] Possible characters for the full password are: ({}), trying range [{}, {})",
+					workItem.getFullPasswordChars(), workItem.getStartIndex(), workItem.getEndIndex());
+
+			result = CompletableFuture.supplyAsync(() -> crack(workItem, cancellationToken), ForkJoinPool.commonPool());
+		}
+
+		Patterns.pipe(result, this.context().dispatcher()).to(this.self());
+	}
+
+	private void handle(WorkItemDoneMessage message) {
+		Object result = message.getResult();
+		if (result instanceof CrackedHintsMessage) {
+			CrackHintsBatchWorkItem workItem = (CrackHintsBatchWorkItem) this.runningWorkItem.workItem;
+			this.log().info("[Worker] Cracked {} hint hashes of sweep {}, starting with choices {} and prefix {}",
+					((CrackedHintsMessage) result).getCrackedHints().size(), workItem.getSweepId(), workItem.getChoices(), workItem.getPrefix());
+		} else if (result instanceof CrackedFullPasswordMessage) {
+			CrackFullPasswordWorkItem workItem = (CrackFullPasswordWorkItem) this.runningWorkItem.workItem;
+			Map<SHA256Hash, String> fullPasswords = ((CrackedFullPasswordMessage) result).getFullPasswords();
+			if (fullPasswords.isEmpty())
+				this.log().info("[Worker] No full password in range [{}, {})", workItem.getStartIndex(), workItem.getEndIndex());
+			else
+				this.log().info("[Worker] Full passwords cracked: {}", fullPasswords.values());
+		} else if (result instanceof Reader.ChunkScannedMessage) {
+			this.log().info("[Worker] Scanned {} records", ((Reader.ChunkScannedMessage) result).getRecords().size());
+		} else {
+			this.log().info("[Worker] Work item cancelled");
+		}
 
 		// Send back the result (implicitly also asks for more work)
-		sender().tell(new CrackedFullPasswordMessage(message.getFullPasswordHash(), fullPassword), self());
+		this.runningWorkItem.sender.tell(result, this.self());
+
+		this.runningWorkItem = null;
+		this.runningCancellationToken = null;
+		this.tryStartNextWorkItem();
+	}
+
+	private void handle(Status.Failure message) {
+		// The cracking of the running work item failed, which is handed back instead of failing the worker, since
+		// a restart would also lose the queued work items
+		this.log().error(message.cause(), "[Worker] Cracking a work item failed");
+		this.fail(this.runningWorkItem);
+
+		this.runningWorkItem = null;
+		this.runningCancellationToken = null;
+		this.tryStartNextWorkItem();
+	}
+
+	private void fail(PendingWorkItem item) {
+		Object jobKey = null, workItemKey = null;
+		if (item.workItem instanceof WorkerPool.CancellableWorkItem) {
+			jobKey = ((WorkerPool.CancellableWorkItem) item.workItem).getJobKey();
+			workItemKey = ((WorkerPool.CancellableWorkItem) item.workItem).getWorkItemKey();
+		}
+		item.sender.tell(new WorkItemFailedMessage(jobKey, workItemKey), this.self());
+	}
+
+	/**
+	 * Gets the hash rate of this node (JVM), which is measured by a short calibration on all of its cores. The calibration
+	 * runs once, when it is first needed, and in the background, so that it neither blocks the actor threads nor competes
+	 * with the calibrations of the other workers of the node.
+	 */
+	static CompletionStage<Double> measureHashesPerSecond() {
+		return Calibration.HASHES_PER_SECOND;
+	}
+
+	// Holds the calibration, which starts when the class is first used
+	private static class Calibration {
+		static final CompletableFuture<Double> HASHES_PER_SECOND = CompletableFuture.supplyAsync(() ->
+			new CombinationCracker(CALIBRATION_CHARS, CALIBRATION_LENGTH).measureHashesPerSecond(CALIBRATION_COMBINATIONS));
+	}
+
+	private static WorkItemDoneMessage crack(CrackHintsBatchWorkItem workItem, HintSetRegistry.HintSet hintSet, CancellationToken cancellationToken) throws IOException {
+		// The hints that have been cracked before this work item started are left out
+		DigestTable hintHashes = hintSet.getRemainingHintHashes();
+		String charset = (workItem.getPrefix() != null ? workItem.getPrefix() : "") + workItem.getChoices();
+		String hintIndexDirectory = ConfigurationSingleton.get().getHintIndexDirectory();
+
+		// Crack the hints in this range, with lookups into the precomputed index of the charset if there is one
+		Map<SHA256Hash, Character> crackedHints;
+		if (hintIndexDirectory != null && charset.length() <= HintPermutationIndex.MAX_CHOICES) {
+			crackedHints = HintPermutationIndex.getOrBuild(Paths.get(hintIndexDirectory), charset)
+					.crack(hintHashes, workItem.getPrefix());
+		} else {
+			// The sweep stops early once all hints of the set have been cracked, by this or any other work item
+			CancellationToken stopToken = new CancellationToken(cancellationToken, hintSet.getExhaustedToken());
+			crackedHints = new HintPermutationCracker(workItem.getChoices(), workItem.getPrefix())
+					.crack(hintHashes, stopToken);
+		}
+
+		if (cancellationToken.isCancelled())
+			return new WorkItemDoneMessage(new WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey()));
+		return new WorkItemDoneMessage(new CrackedHintsMessage(workItem.getSweepId(), workItem.getPrefix(), crackedHints));
+	}
+
+	private static WorkItemDoneMessage crack(CrackFullPasswordWorkItem workItem, CancellationToken cancellationToken) {
+		// Crack the full passwords in this range, hashing each combination once for all of them
+		DigestTable fullPasswordHashes = DigestTable.ofWords(workItem.getFullPasswordHashWords());
+		long startTime = System.nanoTime();
+		Map<SHA256Hash, String> fullPasswords = new CombinationCracker(workItem.getFullPasswordChars(), workItem.getFullPasswordLength())
+				.crack(fullPasswordHashes, workItem.getStartIndex(), workItem.getEndIndex(), cancellationToken);
+		long elapsedTime = System.nanoTime() - startTime;
+
+		if (fullPasswords.isEmpty() && cancellationToken.isCancelled())
+			return new WorkItemDoneMessage(new WorkItemCancelledMessage(workItem.getJobKey(), workItem.getWorkItemKey()));
+
+		// The range has only been fully scanned if some of the full passwords have not been found
+		double hashesPerSecond = 0;
+		if (fullPasswords.size() < fullPasswordHashes.size() && !cancellationToken.isCancelled())
+			hashesPerSecond = (workItem.getEndIndex() - workItem.getStartIndex()) / (Math.max(elapsedTime, 1) / 1e9);
+
+		return new WorkItemDoneMessage(new CrackedFullPasswordMessage(workItem.getJobId(), workItem.getStartIndex(), fullPasswords, hashesPerSecond));
 	}
-}
\ No newline at end of file
+}
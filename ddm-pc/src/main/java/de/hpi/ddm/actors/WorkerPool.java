@@ -2,18 +2,50 @@ package de.hpi.ddm.actors;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.Props;
+import akka.actor.Terminated;
+import de.hpi.ddm.configuration.ConfigurationSingleton;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.Value;
+import scala.concurrent.duration.FiniteDuration;
 
 import java.io.Serializable;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages assignment of a set of work items (messages) over a set of workers.
  * This is similar to an Akka Router, but tuned to our use case where workers can be added after work has already started.
+ *
+ * The queued work items are assigned by priority (see {@link PrioritizedWorkItem}), e.g. so that the short full password
+ * work items do not wait behind the long hint sweeps. Each worker may hold a few work items at once (its credit), which
+ * it queues locally, so that it can start the next one right away instead of waiting for a round trip to the pool.
+ * A worker may be the dispatcher of a node (see {@link NodeDispatcher}), whose credit grows with its number of workers.
+ *
+ * The workers differ in speed, so the pool keeps track of their hash rates, which they measure when they register and
+ * report with their full password results. The queued work items go to the worker that is expected to finish them
+ * first, given its rate and the work items it already holds. Slower workers only get a part of a divisible work item
+ * (see {@link DivisibleWorkItem}), in proportion to their rate, so that they do not hold up the end of a job.
+ *
+ * The pool watches the workers, and queues the work items of a terminated worker again. It also tracks how long the
+ * work items run: a cancellable work item that runs much longer than the others of its priority class (e.g. on a slow
+ * node) gets a speculative copy on an idle worker. Dispatchers run several work items at once, whose runtimes the pool
+ * can not tell apart, so they are neither sampled nor checked for stragglers. The senders of the work items keep the first result of a work item
+ * (see {@link CancellableWorkItem#getWorkItemKey()}), and the other copy is stopped once one has finished.
  */
 public class WorkerPool extends AbstractLoggingActor {
     ////////////////////////
@@ -22,6 +54,21 @@ public class WorkerPool extends AbstractLoggingActor {
 
     public static final String DEFAULT_NAME = "workerpool";
 
+    // Divisible work items are only split for workers slower than this fraction of the mean hash rate, and their part
+    // is at least this fraction of the work item
+    private static final double MAX_SPLIT_FRACTION = 0.8;
+    private static final double MIN_SPLIT_FRACTION = 0.125;
+    // Weight of new measurements in the moving average of the hash rate of a worker
+    private static final double HASH_RATE_SMOOTHING = 0.3;
+
+    // A work item is a straggler if it runs this many times longer than the median work item of its priority class
+    private static final double STRAGGLER_FACTOR = 3.0;
+    private static final long MIN_STRAGGLER_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // Number of recent runtimes per priority class that the median is taken from, and how many are needed for it
+    private static final int RUNTIME_SAMPLES = 128;
+    private static final int MIN_RUNTIME_SAMPLES = 8;
+    private static final FiniteDuration STRAGGLER_CHECK_INTERVAL = FiniteDuration.create(1, TimeUnit.SECONDS);
+
     public static Props props() {
         return Props.create(WorkerPool.class);
     }
@@ -30,24 +77,231 @@ public class WorkerPool extends AbstractLoggingActor {
     // Actor Messages //
     ////////////////////
 
+    /**
+     * Registers a new worker, which runs its work items on the given number of workers (see {@link NodeDispatcher}),
+     * and can hold as many more of them at once.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class RegisterWorkerMessage implements Serializable {
+        private static final long serialVersionUID = 7731465109263551082L;
+
+        private ActorRef worker;
+        private int numWorkers;
+        private double hashesPerSecond; // Measured by the worker, or zero if unknown
+    }
+
+    /**
+     * Tells the pool that the given worker has finished a work item (the one with the given keys, if it is cancellable),
+     * so that it can be assigned another one.
+     */
     @Data @NoArgsConstructor @AllArgsConstructor
     static class NotifyWorkerAvailableMessage implements Serializable {
         private static final long serialVersionUID = -50374816448627600L;
 
         private ActorRef worker;
+        private Object jobKey;
+        private Object workItemKey;
+        private double hashesPerSecond; // Hash rate that the worker reported with its result, or zero if none
+
+        NotifyWorkerAvailableMessage(ActorRef worker) {
+            this(worker, null, null);
+        }
+
+        NotifyWorkerAvailableMessage(ActorRef worker, Object jobKey, Object workItemKey) {
+            this(worker, jobKey, workItemKey, 0);
+        }
+    }
+
+    /**
+     * Tells the pool that the given worker could not finish a work item (the one with the given keys, if it is
+     * cancellable), which is queued again. The worker can be assigned another one.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class NotifyWorkItemFailedMessage implements Serializable {
+        private static final long serialVersionUID = 3570981226431658094L;
+
+        private ActorRef worker;
+        private Object jobKey;
+        private Object workItemKey;
+    }
+
+    /**
+     * Removes all queued work items of the given job (see {@link CancellableWorkItem}) sent by the sender of this message,
+     * and asks the workers currently running one of them to stop it. The stopped work items are acknowledged
+     * by the workers with a {@link Worker.WorkItemCancelledMessage} instead of their result.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class CancelWorkMessage implements Serializable {
+        private static final long serialVersionUID = 2364813466237915127L;
+
+        private Object jobKey;
+    }
+
+    /**
+     * Forwards the given message to the workers currently running a work item of the given job sent by the sender
+     * of this message, e.g. to update them about the progress of the job.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class NotifyJobWorkersMessage implements Serializable {
+        private static final long serialVersionUID = -1587204693257416648L;
+
+        private Object jobKey;
+        private Object message;
+    }
+
+    /**
+     * Tells the sender of a {@link CancelWorkMessage} which of its queued work items have been cancelled,
+     * since no result will be received for them.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class WorkCancelledMessage implements Serializable {
+        private static final long serialVersionUID = -5926385541262785283L;
+
+        private Object jobKey;
+        private List<Object> workItemKeys;
+    }
+
+    /**
+     * Tells the sender of a {@link DivisibleWorkItem} that a new work item with the given key has been split off from one
+     * of its work items, whose result will arrive as well. Since the senders are local to the pool, this message arrives
+     * before any result of the new work item.
+     */
+    @Data @NoArgsConstructor @AllArgsConstructor
+    static class WorkItemSplitMessage implements Serializable {
+        private static final long serialVersionUID = -4012273806149327763L;
+
+        private Object jobKey;
+        private Object workItemKey;
+    }
+
+    /**
+     * Work items that are part of a larger job, such that the remaining work items of the job can be cancelled
+     * (e.g. because another work item of the job already found the result).
+     */
+    interface CancellableWorkItem {
+        Object getJobKey();
+
+        /**
+         * @return The key of the work item within its job, which is also part of its result. Since a work item may be
+         * run more than once (see {@link WorkerPool}), its sender must only handle the first result for the key.
+         */
+        Object getWorkItemKey();
+    }
+
+    /**
+     * Cancellable work items that consist of a number of equal units (e.g. combinations to hash at the reported
+     * hash rate), so that a part of them can be given to a slow worker.
+     */
+    interface DivisibleWorkItem extends CancellableWorkItem {
+        long getSize();
+
+        /**
+         * @return The work item with the first units up to the given size, and another one with the rest of them,
+         * which has a different key.
+         */
+        DivisibleWorkItem[] split(long size);
+    }
+
+    // Priority classes of the work items, the most urgent first
+    static final int FULL_PASSWORD_PRIORITY = 0;
+    static final int SCAN_CHUNK_PRIORITY = 1;
+    static final int HINT_PRIORITY = 2;
+    static final int DEFAULT_PRIORITY = 3;
+
+    /**
+     * Work items that are assigned by priority instead of in the order they are received: the work items of a more
+     * urgent priority class go first, and within a class, the work items with a lower order (e.g. of an older batch).
+     * Other work items are assigned after all of them.
+     */
+    interface PrioritizedWorkItem {
+        int getPriorityClass();
+        long getOrder();
+    }
+
+    // Sent by the pool to itself to look for work items that run too long
+    private static class CheckStragglersMessage {
     }
 
     /////////////////
     // Actor State //
     /////////////////
 
-    private LinkedList<WorkItem> workItems = new LinkedList<>();
-    private LinkedList<ActorRef> idleWorkers = new LinkedList<>();
+    private PriorityQueue<WorkItem> workItems = new PriorityQueue<>(Comparator
+            .comparingInt(WorkItem::getPriorityClass)
+            .thenComparingLong(WorkItem::getOrder)
+            .thenComparingLong(WorkItem::getSequenceNumber));
+    // Work items assigned to each registered worker, which are running or queued at the worker
+    private Map<ActorRef, List<Assignment>> assignedWorkItems = new LinkedHashMap<>();
+    private long nextSequenceNumber = 0;
+
+    // Maximum number of work items assigned to a worker at once, per worker that runs them
+    private int workerCredit;
+    private Map<ActorRef, Integer> workerCredits = new HashMap<>();
+    // Moving average of the hash rate of each worker that has measured it
+    private Map<ActorRef, Double> workerHashRates = new HashMap<>();
+    // Workers that run more than one of their work items at once (see NodeDispatcher)
+    private Set<ActorRef> dispatchers = new HashSet<>();
+
+    // Recent runtimes of the work items by priority class, and the work items that have been copied to another worker
+    private Map<Integer, RuntimeSamples> runtimeSamples = new HashMap<>();
+    private Set<WorkItem> speculativeWorkItems = new HashSet<>();
+    private Cancellable stragglerCheck;
 
     @Value @AllArgsConstructor
     private static class WorkItem {
         private final Object message;
         private final ActorRef sender;
+        // Items of the same priority class and order are assigned in the order they are received
+        private final long sequenceNumber;
+
+        int getPriorityClass() {
+            return this.message instanceof PrioritizedWorkItem ? ((PrioritizedWorkItem) this.message).getPriorityClass() : DEFAULT_PRIORITY;
+        }
+
+        long getOrder() {
+            return this.message instanceof PrioritizedWorkItem ? ((PrioritizedWorkItem) this.message).getOrder() : 0;
+        }
+
+        Object getJobKey() {
+            return this.message instanceof CancellableWorkItem ? ((CancellableWorkItem) this.message).getJobKey() : null;
+        }
+
+        Object getWorkItemKey() {
+            return this.message instanceof CancellableWorkItem ? ((CancellableWorkItem) this.message).getWorkItemKey() : null;
+        }
+    }
+
+    /**
+     * A work item assigned to a worker, which starts running once the work items assigned before it have finished.
+     */
+    private static class Assignment {
+        final WorkItem item;
+        long startTime = 0; // Zero while the work item is queued at the worker
+
+        Assignment(WorkItem item) {
+            this.item = item;
+        }
+    }
+
+    private static class RuntimeSamples {
+        private final long[] runtimes = new long[RUNTIME_SAMPLES];
+        private int count;
+
+        void add(long runtime) {
+            this.runtimes[this.count++ % RUNTIME_SAMPLES] = runtime;
+        }
+
+        /**
+         * @return The median of the recent runtimes, or -1 if there are too few of them.
+         */
+        long median() {
+            if (this.count < MIN_RUNTIME_SAMPLES)
+                return -1;
+
+            long[] runtimes = Arrays.copyOf(this.runtimes, Math.min(this.count, RUNTIME_SAMPLES));
+            Arrays.sort(runtimes);
+            return runtimes[runtimes.length / 2];
+        }
     }
 
     /////////////////////
@@ -57,6 +311,15 @@ public class WorkerPool extends AbstractLoggingActor {
     @Override
     public void preStart() {
         Reaper.watchWithDefaultReaper(this);
+
+        this.workerCredit = Math.max(1, ConfigurationSingleton.get().getWorkerCredit());
+        this.stragglerCheck = this.context().system().scheduler().schedule(STRAGGLER_CHECK_INTERVAL, STRAGGLER_CHECK_INTERVAL,
+                this.self(), new CheckStragglersMessage(), this.context().dispatcher(), ActorRef.noSender());
+    }
+
+    @Override
+    public void postStop() {
+        this.stragglerCheck.cancel();
     }
 
     ////////////////////
@@ -66,27 +329,268 @@ public class WorkerPool extends AbstractLoggingActor {
     @Override
     public Receive createReceive() {
         return receiveBuilder()
+                .match(RegisterWorkerMessage.class, this::handle)
                 .match(NotifyWorkerAvailableMessage.class, this::handle)
+                .match(NotifyWorkItemFailedMessage.class, this::handle)
+                .match(CancelWorkMessage.class, this::handle)
+                .match(NotifyJobWorkersMessage.class, this::handle)
+                .match(CheckStragglersMessage.class, this::handle)
+                .match(Terminated.class, this::handle)
                 .matchAny(this::handle)
                 .build();
     }
 
+    private void handle(RegisterWorkerMessage message) {
+        if (assignedWorkItems.containsKey(message.getWorker()))
+            return;
+
+        int credit = Math.max(1, message.getNumWorkers()) * workerCredit;
+        assignedWorkItems.put(message.getWorker(), new ArrayList<>(credit));
+        workerCredits.put(message.getWorker(), credit);
+        if (message.getHashesPerSecond() > 0)
+            workerHashRates.put(message.getWorker(), message.getHashesPerSecond());
+        if (message.getNumWorkers() > 1)
+            dispatchers.add(message.getWorker());
+        context().watch(message.getWorker());
+
+        tryAssignWork();
+    }
+
     private void handle(NotifyWorkerAvailableMessage message) {
-        idleWorkers.add(message.getWorker());
+        // Results of a terminated worker may still arrive, but its work items have been queued again
+        List<Assignment> assignments = assignedWorkItems.get(message.getWorker());
+        if (assignments == null)
+            return;
+
+        if (message.getHashesPerSecond() > 0)
+            workerHashRates.merge(message.getWorker(), message.getHashesPerSecond(),
+                    (rate, measurement) -> HASH_RATE_SMOOTHING * measurement + (1 - HASH_RATE_SMOOTHING) * rate);
+
+        finish(message.getWorker(), assignments, message);
+        tryAssignWork();
+    }
+
+    private void handle(NotifyWorkItemFailedMessage message) {
+        List<Assignment> assignments = assignedWorkItems.get(message.getWorker());
+        Assignment failed = assignments != null ? remove(assignments, message.getJobKey(), message.getWorkItemKey()) : null;
+        if (failed == null)
+            return;
+
+        // The work item is queued again, unless a copy of it is still running on another worker
+        if (!speculativeWorkItems.remove(failed.item)) {
+            log().warning("[WorkerPool] Work item {} of job {} failed on worker {}, queued it again",
+                    failed.item.getWorkItemKey(), failed.item.getJobKey(), message.getWorker());
+            workItems.add(failed.item);
+        }
+
         tryAssignWork();
     }
 
+    /**
+     * Removes the assignment of the work item with the given keys, which has been sent by the sender of the current
+     * message. The workers process their work items in order, but the queued ones of a cancelled job are acknowledged
+     * early, so the work item is identified by its keys.
+     * @return The removed assignment, or null if there is none.
+     */
+    private Assignment remove(List<Assignment> assignments, Object jobKey, Object workItemKey) {
+        Iterator<Assignment> iterator = assignments.iterator();
+        while (iterator.hasNext()) {
+            Assignment assignment = iterator.next();
+            if (assignment.item.getSender().equals(sender()) &&
+                    Objects.equals(assignment.item.getJobKey(), jobKey) &&
+                    Objects.equals(assignment.item.getWorkItemKey(), workItemKey)) {
+                iterator.remove();
+                startNext(assignments);
+                return assignment;
+            }
+        }
+        return null;
+    }
+
+    private void startNext(List<Assignment> assignments) {
+        if (!assignments.isEmpty() && assignments.get(0).startTime == 0)
+            assignments.get(0).startTime = System.nanoTime();
+    }
+
+    private void finish(ActorRef worker, List<Assignment> assignments, NotifyWorkerAvailableMessage message) {
+        Assignment finished = remove(assignments, message.getJobKey(), message.getWorkItemKey());
+        if (finished == null)
+            return;
+
+        long now = System.nanoTime();
+        if (finished.startTime > 0 && !dispatchers.contains(worker) && !speculativeWorkItems.contains(finished.item))
+            runtimeSamples.computeIfAbsent(finished.item.getPriorityClass(), c -> new RuntimeSamples()).add(now - finished.startTime);
+
+        // The other copies of the work item can not contribute anything anymore. They are released right away, since
+        // their senders may already have stopped (e.g. after their last result), so that their acknowledgements of the
+        // cancellation never reach the pool, and are ignored if they do.
+        if (speculativeWorkItems.remove(finished.item)) {
+            Worker.CancelJobMessage cancellation = new Worker.CancelJobMessage(finished.item.getJobKey(), finished.item.getWorkItemKey());
+            for (Map.Entry<ActorRef, List<Assignment>> entry : assignedWorkItems.entrySet()) {
+                if (entry.getValue().removeIf(assignment -> assignment.item.equals(finished.item))) {
+                    startNext(entry.getValue());
+                    entry.getKey().tell(cancellation, finished.item.getSender());
+                }
+            }
+        }
+    }
+
     private void handle(Object message) {
-        workItems.add(new WorkItem(message, sender()));
+        workItems.add(new WorkItem(message, sender(), nextSequenceNumber++));
+        tryAssignWork();
+    }
+
+    private void handle(CancelWorkMessage message) {
+        List<Object> workItemKeys = new ArrayList<>();
+        workItems.removeIf(item -> {
+            if (!isPartOfJob(item, message.getJobKey()))
+                return false;
+            workItemKeys.add(item.getWorkItemKey());
+            return true;
+        });
+
+        sender().tell(new WorkCancelledMessage(message.getJobKey(), workItemKeys), self());
+
+        // If a worker has already finished its work item, it just ignores the cancellation
+        tellJobWorkers(message.getJobKey(), new Worker.CancelJobMessage(message.getJobKey(), null));
+    }
+
+    private void handle(NotifyJobWorkersMessage message) {
+        tellJobWorkers(message.getJobKey(), message.getMessage());
+    }
+
+    private void tellJobWorkers(Object jobKey, Object message) {
+        for (Map.Entry<ActorRef, List<Assignment>> entry : assignedWorkItems.entrySet()) {
+            if (entry.getValue().stream().anyMatch(assignment -> isPartOfJob(assignment.item, jobKey)))
+                entry.getKey().tell(message, sender());
+        }
+    }
+
+    private boolean isPartOfJob(WorkItem item, Object jobKey) {
+        return item.getSender().equals(sender()) &&
+                item.getMessage() instanceof CancellableWorkItem &&
+                ((CancellableWorkItem) item.getMessage()).getJobKey().equals(jobKey);
+    }
+
+    private void handle(Terminated message) {
+        List<Assignment> assignments = assignedWorkItems.remove(message.getActor());
+        workerCredits.remove(message.getActor());
+        workerHashRates.remove(message.getActor());
+        dispatchers.remove(message.getActor());
+        if (assignments == null)
+            return;
+
+        // The work items of the worker are queued again, unless a copy of them is still running on another worker
+        for (Assignment assignment : assignments) {
+            if (!speculativeWorkItems.remove(assignment.item))
+                workItems.add(assignment.item);
+        }
+
+        log().warning("[WorkerPool] Worker {} terminated, queued its {} work items again", message.getActor(), assignments.size());
         tryAssignWork();
     }
 
+    /**
+     * Copies the running work items that take much longer than the others of their priority class to the idle workers.
+     * Only cancellable work items are copied, since their senders tell the results of the copies apart.
+     */
+    private void handle(CheckStragglersMessage message) {
+        List<ActorRef> idleWorkers = new ArrayList<>();
+        for (Map.Entry<ActorRef, List<Assignment>> entry : assignedWorkItems.entrySet()) {
+            if (entry.getValue().isEmpty())
+                idleWorkers.add(entry.getKey());
+        }
+        if (idleWorkers.isEmpty())
+            return;
+
+        long now = System.nanoTime();
+        List<WorkItem> stragglers = new ArrayList<>();
+        for (Map.Entry<ActorRef, List<Assignment>> entry : assignedWorkItems.entrySet()) {
+            List<Assignment> assignments = entry.getValue();
+            if (dispatchers.contains(entry.getKey()) || assignments.isEmpty() || assignments.get(0).startTime == 0)
+                continue;
+
+            Assignment running = assignments.get(0);
+            RuntimeSamples samples = runtimeSamples.get(running.item.getPriorityClass());
+            long median = samples != null ? samples.median() : -1;
+            if (median < 0 || !(running.item.getMessage() instanceof CancellableWorkItem) || speculativeWorkItems.contains(running.item))
+                continue;
+
+            long runtime = now - running.startTime;
+            if (runtime > MIN_STRAGGLER_NANOS && runtime > STRAGGLER_FACTOR * median)
+                stragglers.add(running.item);
+        }
+
+        for (int i = 0; i < stragglers.size() && i < idleWorkers.size(); i++) {
+            WorkItem item = stragglers.get(i);
+            log().info("[WorkerPool] Work item {} of job {} is a straggler, running a copy of it", item.getWorkItemKey(), item.getJobKey());
+
+            speculativeWorkItems.add(item);
+            assign(idleWorkers.get(i), item);
+        }
+    }
+
+    /**
+     * Assigns the queued work items to the workers that have credit left, each to the worker that is expected to finish
+     * it first: the one with the fewest assigned work items relative to its hash rate. For workers of the same rate, this
+     * spreads the work items level by level, first to the idle workers, then to those with one assigned work item, etc.
+     */
     private void tryAssignWork() {
-        while (!idleWorkers.isEmpty() && !workItems.isEmpty()) {
-            WorkItem item = workItems.removeFirst();
-            ActorRef worker = idleWorkers.removeFirst();
+        double meanHashRate = getMeanHashRate();
+        while (!workItems.isEmpty()) {
+            ActorRef nextWorker = null;
+            double nextFinishTime = Double.MAX_VALUE;
+            for (Map.Entry<ActorRef, List<Assignment>> entry : assignedWorkItems.entrySet()) {
+                int load = entry.getValue().size();
+                if (load >= workerCredits.get(entry.getKey()))
+                    continue;
 
-            worker.tell(item.getMessage(), item.getSender());
+                double finishTime = (load + 1) / workerHashRates.getOrDefault(entry.getKey(), meanHashRate);
+                if (finishTime < nextFinishTime) {
+                    nextWorker = entry.getKey();
+                    nextFinishTime = finishTime;
+                }
+            }
+            if (nextWorker == null)
+                return;
+
+            assign(nextWorker, takeWorkItem(nextWorker, meanHashRate));
         }
     }
+
+    private double getMeanHashRate() {
+        return workerHashRates.values().stream().mapToDouble(Double::doubleValue).average().orElse(1);
+    }
+
+    /**
+     * Takes the next queued work item for the given worker. If the worker is slower than the others, it only gets
+     * a part of a divisible work item, and the rest of it stays at the head of the queue.
+     */
+    private WorkItem takeWorkItem(ActorRef worker, double meanHashRate) {
+        WorkItem item = workItems.poll();
+        Double hashRate = workerHashRates.get(worker);
+        if (hashRate == null || !(item.getMessage() instanceof DivisibleWorkItem))
+            return item;
+
+        double fraction = hashRate / meanHashRate;
+        DivisibleWorkItem workItem = (DivisibleWorkItem) item.getMessage();
+        long size = (long) (workItem.getSize() * Math.max(MIN_SPLIT_FRACTION, fraction));
+        if (fraction >= MAX_SPLIT_FRACTION || size <= 0 || size >= workItem.getSize())
+            return item;
+
+        DivisibleWorkItem[] parts = workItem.split(size);
+        workItems.add(new WorkItem(parts[1], item.getSender(), item.getSequenceNumber()));
+        item.getSender().tell(new WorkItemSplitMessage(parts[1].getJobKey(), parts[1].getWorkItemKey()), self());
+        return new WorkItem(parts[0], item.getSender(), item.getSequenceNumber());
+    }
+
+    private void assign(ActorRef worker, WorkItem item) {
+        List<Assignment> assignments = assignedWorkItems.get(worker);
+        Assignment assignment = new Assignment(item);
+        if (assignments.isEmpty())
+            assignment.startTime = System.nanoTime();
+        assignments.add(assignment);
+
+        worker.tell(item.getMessage(), item.getSender());
+    }
 }
@@ -0,0 +1,31 @@
+package de.hpi.ddm.algorithms;
+
+/**
+ * Flag shared between the owner of a cracking task and the threads running it, which allows the owner to ask the
+ * cracking loops to stop early. The loops check it cooperatively, so a cancelled task does not stop immediately.
+ *
+ * A token can be linked to parent tokens, in which case it is also cancelled when any of the parents is cancelled.
+ */
+public class CancellationToken {
+    private final CancellationToken[] parents;
+    private volatile boolean cancelled = false;
+
+    public CancellationToken(CancellationToken... parents) {
+        this.parents = parents;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        if (this.cancelled)
+            return true;
+
+        for (CancellationToken parent : this.parents) {
+            if (parent != null && parent.isCancelled())
+                return true;
+        }
+        return false;
+    }
+}
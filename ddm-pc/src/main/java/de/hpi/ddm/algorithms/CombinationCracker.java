@@ -1,29 +1,65 @@
 package de.hpi.ddm.algorithms;
 
+import de.hpi.ddm.hashing.SHA256Engine;
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Cracks a password given its SHA256 hash, by a combination algorithm of a given length. Here, a combination
  * means that each character of the password belongs to a given character set, with no further restrictions.
+ * Multiple passwords of the same character set and length can be cracked together, with a single pass over the combinations.
+ *
+ * The combinations are numbered, so the space of combinations can be split into ranges of combination indices,
+ * which are cracked in parallel on a fork/join pool.
  */
 public class CombinationCracker {
+    // Number of combinations that are generated before hashing them together with SHA256Engine.hashBatch
+    private static final int BATCH_SIZE = 256;
+
+    // Ranges with at most this many combinations are never split into smaller ranges
+    private static final long MIN_SPLIT_SIZE = 16 * BATCH_SIZE;
+
+    // Number of ranges per thread of the pool, so that the threads that finish early can steal some work
+    private static final int RANGES_PER_THREAD = 8;
+
     private final byte[] choices;
     private final int times;
+    private final ForkJoinPool pool;
 
     public CombinationCracker(String choices, int times) {
+        this(choices, times, ForkJoinPool.commonPool());
+    }
+
+    public CombinationCracker(String choices, int times, ForkJoinPool pool) {
         if (choices == null || choices.length() == 0)
             throw new IllegalArgumentException("CombinationCracker: 'choices' must be a non-null, non-empty string.");
         if (!StandardCharsets.US_ASCII.newEncoder().canEncode(choices))
             throw new IllegalArgumentException("CombinationCracker: 'choices' can only contain ASCII characters.");
-        if (times <= 0)
-            throw new IllegalArgumentException("CombinationCracker: 'times' must be a positive integer.");
+        if (times <= 0 || times > SHA256Engine.MAX_MESSAGE_LENGTH)
+            throw new IllegalArgumentException("CombinationCracker: 'times' must be a positive integer up to " + SHA256Engine.MAX_MESSAGE_LENGTH + ".");
+        if (pool == null)
+            throw new IllegalArgumentException("CombinationCracker: 'pool' must not be null.");
 
         this.choices = choices.getBytes(StandardCharsets.US_ASCII);
         this.times = times;
+        this.pool = pool;
+    }
+
+    /**
+     * @return The total number of combinations, i.e. the exclusive upper bound of the combination indices.
+     *         Note that this implementation is limited to ~2^63 combinations, but that should be plenty for our use case.
+     */
+    public long getNumCombinations() {
+        return BigInteger.valueOf(choices.length).pow(times).longValueExact();
     }
 
     /**
@@ -31,34 +67,163 @@ public class CombinationCracker {
      * @return The cracked plaintext.
      */
     public String crack(SHA256Hash targetHash) {
+        String plainText = this.crack(targetHash, 0, this.getNumCombinations());
+        if (plainText == null)
+            throw new RuntimeException("The hash is not generated by any of the attempted combinations.");
+
+        return plainText;
+    }
+
+    /**
+     * Tries to crack the given hash using the combinations with an index in the range [startIndex, endIndex).
+     * The combination with index i is given by the digits of i in base 'choices.length' (least significant first),
+     * where each digit is the index of the character in the choices.
+     * @return The cracked plaintext, or null if no combination in the range matches the hash.
+     */
+    public String crack(SHA256Hash targetHash, long startIndex, long endIndex) {
+        return this.crack(targetHash, startIndex, endIndex, new CancellationToken());
+    }
+
+    /**
+     * Same as {@link #crack(SHA256Hash, long, long)}, but stops early if the given token is cancelled.
+     * @return The cracked plaintext, or null if no combination in the range matches the hash or it was cancelled.
+     */
+    public String crack(SHA256Hash targetHash, long startIndex, long endIndex, CancellationToken cancellationToken) {
         if (targetHash == null)
             throw new IllegalArgumentException("CombinationCracker: 'targetHash' must not be null.");
 
-        // Calculate the total number of combinations, which will be used for the loop end condition.
-        // Note that this implementation is limited to ~2^63 combinations, but that should be plenty for our use case
-        long numCombinations = BigInteger.valueOf(choices.length).pow(times).longValueExact();
+        Map<SHA256Hash, String> plainTexts = this.crack(DigestTable.of(Collections.singletonList(targetHash)), startIndex, endIndex, cancellationToken);
+        return plainTexts.get(targetHash);
+    }
 
-        // Initialize the combination array with the first combination
-        byte[] combination = new byte[times];
-        Arrays.fill(combination, choices[0]);
-
-        for (long iCombination = 0; iCombination < numCombinations; iCombination++) {
-            // Check if the current combination matches the target hash
-            if (SHA256Hash.fromDataHash(combination, combination.length).equals(targetHash))
-                return new String(combination, StandardCharsets.US_ASCII);
-
-            // Advance to the next combination. To do this, we can interpret 'iCombination' as a number in base
-            // 'choices.length', where each digit represents the current choice index in 'combination'.
-            // Here, we update the items in 'combination' corresponding to the changing digits when we increase 'iCombination'
-            long r = (iCombination + 1);
-            for (int i = 0, x = 0; i < times && x == 0; i++)
-            {
-                x = (int)(r % choices.length);
-                r /= choices.length;
-                combination[i] = choices[x];
+    /**
+     * Tries to crack all the given hashes at once, i.e. each combination in the range [startIndex, endIndex)
+     * is hashed only once and then looked up in the table of target hashes. The search stops as soon as
+     * all target hashes are cracked, or the given token is cancelled.
+     * @return The cracked plaintexts by their hash, which only contains the hashes cracked in the range.
+     */
+    public Map<SHA256Hash, String> crack(DigestTable targetHashes, long startIndex, long endIndex, CancellationToken cancellationToken) {
+        if (targetHashes == null)
+            throw new IllegalArgumentException("CombinationCracker: 'targetHashes' must not be null.");
+        if (startIndex < 0 || startIndex > endIndex || endIndex > this.getNumCombinations())
+            throw new IllegalArgumentException("CombinationCracker: '[startIndex, endIndex)' must be a valid range of combination indices.");
+
+        Map<Integer, String> plainTexts = new ConcurrentHashMap<>();
+        CancellationToken done = new CancellationToken(cancellationToken);
+        if (!targetHashes.isEmpty()) {
+            long splitSize = Math.max(MIN_SPLIT_SIZE, (endIndex - startIndex) / ((long) pool.getParallelism() * RANGES_PER_THREAD));
+            pool.invoke(new CrackRangeTask(targetHashes, startIndex, endIndex, splitSize, plainTexts, done));
+        }
+
+        Map<SHA256Hash, String> crackedHashes = new HashMap<>();
+        plainTexts.forEach((id, plainText) -> crackedHashes.put(targetHashes.getHash(id), plainText));
+        return crackedHashes;
+    }
+
+    /**
+     * Measures the hash rate of the pool, by hashing the first combinations (up to the given number of them)
+     * for a hash that none of them matches.
+     * @return The number of combinations hashed per second.
+     */
+    public double measureHashesPerSecond(long numCombinations) {
+        long endIndex = Math.min(numCombinations, this.getNumCombinations());
+        SHA256Hash unmatchedHash = SHA256Hash.fromWords(0, 0, 0, 0);
+
+        long startTime = System.nanoTime();
+        this.crack(DigestTable.of(Collections.singletonList(unmatchedHash)), 0, endIndex, new CancellationToken());
+        long elapsedTime = System.nanoTime() - startTime;
+
+        return endIndex / (Math.max(elapsedTime, 1) / 1e9);
+    }
+
+    /**
+     * Cracks a range of combination indices, splitting it in halves (to be run in parallel) while it is big enough.
+     * All tasks share the cracked plaintexts (by the ID of their hash in the table) and a token, which is cancelled
+     * as soon as all target hashes are cracked, so that the other tasks stop early.
+     */
+    private class CrackRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = -5208345062394372671L;
+
+        private final DigestTable targetHashes;
+        private final long startIndex;
+        private final long endIndex;
+        private final long splitSize;
+        private final Map<Integer, String> plainTexts;
+        private final CancellationToken done;
+
+        CrackRangeTask(DigestTable targetHashes, long startIndex, long endIndex, long splitSize, Map<Integer, String> plainTexts, CancellationToken done) {
+            this.targetHashes = targetHashes;
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.splitSize = splitSize;
+            this.plainTexts = plainTexts;
+            this.done = done;
+        }
+
+        @Override
+        protected void compute() {
+            if (done.isCancelled())
+                return;
+
+            if (endIndex - startIndex <= splitSize) {
+                crackRange(targetHashes, startIndex, endIndex, plainTexts, done);
+                return;
             }
+
+            long middleIndex = startIndex + (endIndex - startIndex) / 2;
+            invokeAll(new CrackRangeTask(targetHashes, startIndex, middleIndex, splitSize, plainTexts, done),
+                    new CrackRangeTask(targetHashes, middleIndex, endIndex, splitSize, plainTexts, done));
+        }
+    }
+
+    /**
+     * Sequentially tries to crack the given hashes with the combinations in the range [startIndex, endIndex),
+     * adding the cracked plaintexts to the given map. The search is stopped early (between two batches of combinations)
+     * if the given token gets cancelled, and the token is cancelled once all target hashes have been cracked.
+     */
+    private void crackRange(DigestTable targetHashes, long startIndex, long endIndex, Map<Integer, String> plainTexts, CancellationToken done) {
+        SHA256Engine engine = new SHA256Engine();
+        byte[] batch = new byte[BATCH_SIZE * times];
+        long[] digests = new long[BATCH_SIZE * SHA256Engine.DIGEST_LONGS];
+
+        // Initialize the combination array with the first combination of the range
+        byte[] combination = new byte[times];
+        long q = startIndex;
+        for (int i = 0; i < times; i++) {
+            combination[i] = choices[(int)(q % choices.length)];
+            q /= choices.length;
         }
 
-        throw new RuntimeException("The hash is not generated by any of the attempted combinations.");
+        for (long iCombination = startIndex; iCombination < endIndex && !done.isCancelled(); ) {
+            // Fill the batch with the next combinations
+            int count = (int) Math.min(BATCH_SIZE, endIndex - iCombination);
+            for (int c = 0; c < count; c++, iCombination++) {
+                System.arraycopy(combination, 0, batch, c * times, times);
+
+                // Advance to the next combination. To do this, we can interpret 'iCombination' as a number in base
+                // 'choices.length', where each digit represents the current choice index in 'combination'.
+                // Here, we update the items in 'combination' corresponding to the changing digits when we increase 'iCombination'
+                long r = (iCombination + 1);
+                for (int i = 0, x = 0; i < times && x == 0; i++)
+                {
+                    x = (int)(r % choices.length);
+                    r /= choices.length;
+                    combination[i] = choices[x];
+                }
+            }
+
+            // Check if any of the combinations in the batch matches a target hash, comparing the first word only at first
+            engine.hashBatch(batch, times, times, count, digests);
+            for (int c = 0; c < count; c++) {
+                int d = c * SHA256Engine.DIGEST_LONGS;
+                if (!targetHashes.mightContain(digests[d]))
+                    continue;
+
+                int id = targetHashes.indexOf(digests[d], digests[d+1], digests[d+2], digests[d+3]);
+                if (id >= 0 && plainTexts.putIfAbsent(id, new String(batch, c * times, times, StandardCharsets.US_ASCII)) == null
+                        && plainTexts.size() >= targetHashes.size())
+                    done.cancel();
+            }
+        }
     }
 }
@@ -1,29 +1,53 @@
 package de.hpi.ddm.algorithms;
 
+import de.hpi.ddm.hashing.SHA256Engine;
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Cracks a set of hints given their SHA256 hash, by a permutation algorithm of a given character set.
+ *
+ * The permutations are split into sub-prefixes (i.e. the permutations starting with each of the choices),
+ * which are cracked in parallel on a fork/join pool.
  */
 public class HintPermutationCracker {
+    // Sweeps with at most this many choices (8! = 40320 permutations) are never split into sub-prefixes
+    private static final int MAX_SEQUENTIAL_CHOICES = 8;
+
     private final byte[] choices;
     private final byte[] prefix;
+    private final ForkJoinPool pool;
 
     public HintPermutationCracker(String choices, String prefix) {
+        this(choices, prefix, ForkJoinPool.commonPool());
+    }
+
+    public HintPermutationCracker(String choices, String prefix, ForkJoinPool pool) {
         if (choices == null || choices.length() == 0)
             throw new IllegalArgumentException("HintPermutationCracker: 'choices' must be a non-null, non-empty string.");
         if (!StandardCharsets.US_ASCII.newEncoder().canEncode(choices))
             throw new IllegalArgumentException("HintPermutationCracker: 'choices' can only contain ASCII characters.");
         if (prefix != null && !StandardCharsets.US_ASCII.newEncoder().canEncode(prefix))
             throw new IllegalArgumentException("HintPermutationCracker: 'choices' can only contain ASCII characters.");
+        if (pool == null)
+            throw new IllegalArgumentException("HintPermutationCracker: 'pool' must not be null.");
 
         this.choices = choices.getBytes(StandardCharsets.US_ASCII);
         this.prefix = prefix != null ? prefix.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        this.pool = pool;
+
+        if (this.prefix.length + this.choices.length - 1 > SHA256Engine.MAX_MESSAGE_LENGTH)
+            throw new IllegalArgumentException("HintPermutationCracker: hints can have at most " + SHA256Engine.MAX_MESSAGE_LENGTH + " characters.");
     }
 
     /**
@@ -47,20 +71,67 @@ public class HintPermutationCracker {
     }
 
     /**
-     * Checks if the SHA256 hash of the given permutation matches some of the hints to crack,
-     * and if so, stores the cracked hint information (plain text and missing character) in the map.
-     * @param candidate The permutation corresponding to the hint.
-     * @param hintHashes Set of hint SHA256 hashes that we are trying to crack.
-     * @param crackedHints Map of cracked hint SHA256 hashes to character missing from the hint.
+     * Holds the state needed to check the permutations against the hints to crack, which is reused for every
+     * permutation so that the cracking loop does not allocate anything (unless a hint is cracked).
+     * The permutations are collected in a buffer, and hashed in batches with SHA256Engine.hashBatch.
      */
-    private static void tryCrackPasswordHint(byte[] candidate, Set<SHA256Hash> hintHashes, Map<SHA256Hash, Character> crackedHints) {
-        // Ignore the last character of the permutation (since it is not in the hint, just used for the permutations!)
-        // In fact, note that in case of a match, this last character will be the character missing in the hint
-        SHA256Hash candidateHash = SHA256Hash.fromDataHash(candidate, candidate.length - 1);
-
-        if (hintHashes.contains(candidateHash)) {
-            // Save the cracked hint plain text
-            crackedHints.put(candidateHash, (char) candidate[candidate.length - 1]);
+    private static class HintMatcher {
+        private static final int BATCH_SIZE = 256;
+
+        private final SHA256Engine engine = new SHA256Engine();
+        private final int stride;
+        private final byte[] batch;
+        private final long[] digests = new long[BATCH_SIZE * SHA256Engine.DIGEST_LONGS];
+        private int count = 0;
+
+        private final DigestTable hintHashes;
+        private final Map<SHA256Hash, Character> crackedHints;
+        private final CancellationToken cancellationToken;
+
+        HintMatcher(DigestTable hintHashes, Map<SHA256Hash, Character> crackedHints, CancellationToken cancellationToken, int permutationLength) {
+            this.hintHashes = hintHashes;
+            this.crackedHints = crackedHints;
+            this.cancellationToken = cancellationToken;
+            this.stride = permutationLength;
+            this.batch = new byte[BATCH_SIZE * permutationLength];
+        }
+
+        /**
+         * Adds the given permutation to the batch of candidates to check, checking the batch if it is full.
+         * @param candidate The permutation corresponding to the hint.
+         * @return False if all hints have been cracked or the sweep has been cancelled, so no more permutations need to be checked.
+         */
+        boolean add(byte[] candidate) {
+            System.arraycopy(candidate, 0, batch, count * stride, stride);
+            if (++count == BATCH_SIZE) {
+                flush();
+                return !isDone();
+            }
+            return true;
+        }
+
+        /**
+         * Checks if the SHA256 hash of the permutations in the batch matches some of the hints to crack,
+         * and if so, stores the cracked hint information (plain text and missing character) in the map.
+         */
+        void flush() {
+            // Ignore the last character of the permutation (since it is not in the hint, just used for the permutations!)
+            // In fact, note that in case of a match, this last character will be the character missing in the hint
+            engine.hashBatch(batch, stride, stride - 1, count, digests);
+
+            for (int c = 0; c < count; c++) {
+                int d = c * SHA256Engine.DIGEST_LONGS;
+                int hintId = hintHashes.indexOf(digests[d], digests[d+1], digests[d+2], digests[d+3]);
+                if (hintId >= 0) {
+                    // Save the cracked hint plain text
+                    crackedHints.put(hintHashes.getHash(hintId), (char) batch[c * stride + stride - 1]);
+                }
+            }
+            count = 0;
+        }
+
+        boolean isDone() {
+            return crackedHints.size() >= hintHashes.size() || cancellationToken.isCancelled();
         }
     }
 
@@ -74,8 +145,85 @@ public class HintPermutationCracker {
         if (hintHashes == null)
             throw new IllegalArgumentException("HintPermutationCracker: 'hintHashes' must be a non-null array.");
 
-        Map<SHA256Hash, Character> crackedHints = new HashMap<>();
+        return this.crack(DigestTable.of(hintHashes));
+    }
+
+    /**
+     * Cracks all the hint hashes in the given table using this instance's hint permutation cracker configuration.
+     * The table must not be modified while cracking.
+     * @see #crack(Set)
+     */
+    public Map<SHA256Hash, Character> crack(DigestTable hintHashes) {
+        return this.crack(hintHashes, new CancellationToken());
+    }
+
+    /**
+     * Same as {@link #crack(DigestTable)}, but stops early if the given token is cancelled.
+     * @return The hints that have been cracked until the end of the sweep or its cancellation.
+     */
+    public Map<SHA256Hash, Character> crack(DigestTable hintHashes, CancellationToken cancellationToken) {
+        if (hintHashes == null)
+            throw new IllegalArgumentException("HintPermutationCracker: 'hintHashes' must be a non-null table.");
+
+        Map<SHA256Hash, Character> crackedHints = new ConcurrentHashMap<>();
+        pool.invoke(new SweepTask(prefix, choices, hintHashes, crackedHints, cancellationToken));
+        return new HashMap<>(crackedHints);
+    }
+
+    /**
+     * Cracks the hints among the permutations with a given prefix. If there are too many of those permutations,
+     * they are split by sub-prefix (i.e. by the choice that follows the prefix), and the sub-prefixes are run in parallel.
+     * All tasks share the map of cracked hints, so that all of them stop early once every hint has been cracked
+     * (or the sweep is cancelled).
+     */
+    private static class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 3859207183495862915L;
+
+        private final byte[] prefix;
+        private final byte[] choices;
+        private final DigestTable hintHashes;
+        private final Map<SHA256Hash, Character> crackedHints;
+        private final CancellationToken cancellationToken;
+
+        SweepTask(byte[] prefix, byte[] choices, DigestTable hintHashes, Map<SHA256Hash, Character> crackedHints,
+                  CancellationToken cancellationToken) {
+            this.prefix = prefix;
+            this.choices = choices;
+            this.hintHashes = hintHashes;
+            this.crackedHints = crackedHints;
+            this.cancellationToken = cancellationToken;
+        }
+
+        @Override
+        protected void compute() {
+            if (crackedHints.size() >= hintHashes.size() || cancellationToken.isCancelled())
+                return;
+
+            if (choices.length <= MAX_SEQUENTIAL_CHOICES) {
+                sweep(prefix, choices, new HintMatcher(hintHashes, crackedHints, cancellationToken, prefix.length + choices.length));
+                return;
+            }
+
+            List<SweepTask> subTasks = new ArrayList<>(choices.length);
+            for (int i = 0; i < choices.length; i++) {
+                byte[] subPrefix = new byte[prefix.length + 1];
+                System.arraycopy(prefix, 0, subPrefix, 0, prefix.length);
+                subPrefix[prefix.length] = choices[i];
+
+                byte[] subChoices = new byte[choices.length - 1];
+                System.arraycopy(choices, 0, subChoices, 0, i);
+                System.arraycopy(choices, i + 1, subChoices, i, choices.length - i - 1);
+
+                subTasks.add(new SweepTask(subPrefix, subChoices, hintHashes, crackedHints, cancellationToken));
+            }
+            invokeAll(subTasks);
+        }
+    }
 
+    /**
+     * Sequentially iterates over all permutations of the choices after the given prefix, checking them with the matcher.
+     */
+    private static void sweep(byte[] prefix, byte[] choices, HintMatcher matcher) {
         // Initialize the state of the "Countdown QuickPerm Algorithm" (see getNextPermutation for more information)
         int[] p = new int[choices.length + 1];
         for (int k = 0; k < p.length; k++)
@@ -86,15 +234,19 @@ public class HintPermutationCracker {
         System.arraycopy(choices, 0, permutation, prefix.length, choices.length);
 
         // Iterate over all permutations and repeatedly check if they match the corresponding hint hashes
+        // (a single choice only has a single permutation, which the QuickPerm algorithm cannot handle)
         int k = 1;
-        tryCrackPasswordHint(permutation, hintHashes, crackedHints);
+        boolean keepGoing = matcher.add(permutation);
 
-        while ((k = getNextPermutation(permutation, prefix.length, p, k)) != choices.length) {
-            tryCrackPasswordHint(permutation, hintHashes, crackedHints);
-        }
+        if (choices.length > 1) {
+            while (keepGoing && (k = getNextPermutation(permutation, prefix.length, p, k)) != choices.length) {
+                keepGoing = matcher.add(permutation);
+            }
 
-        tryCrackPasswordHint(permutation, hintHashes, crackedHints);
+            if (keepGoing)
+                matcher.add(permutation);
+        }
 
-        return crackedHints;
+        matcher.flush();
     }
 }
@@ -0,0 +1,357 @@
+package de.hpi.ddm.algorithms;
+
+import de.hpi.ddm.hashing.SHA256Engine;
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import it.unimi.dsi.fastutil.Arrays;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed table of the hashes of all hints of a character set, which is stored in a file and memory-mapped,
+ * so that hints can be cracked by lookups instead of by sweeping over all permutations of the character set.
+ *
+ * A hint of a character set with n characters is given by the first n-1 characters of a permutation of the set,
+ * so each hint corresponds to the index (rank) of a permutation in lexicographic order of the sorted character set.
+ * The file contains a record with the first digest word of the hint and the rank of its permutation, for each
+ * permutation, sorted by digest word. Since the digest words are uniformly distributed, the lookups first use a
+ * directory of the records by the top bits of the digest word, and then binary search in the directory bucket.
+ * Since the records only hold 64 bits of the digest, the hint is rehashed to verify the matches.
+ */
+public class HintPermutationIndex {
+    // Limits the file size to 12 * 11! bytes (~480 MB), so it can be mapped with a single buffer
+    public static final int MAX_CHOICES = 11;
+
+    private static final long MAGIC = 0x44444d48494e5453L; // "DDMHINTS"
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 12;
+    private static final int DIRECTORY_BITS = 16;
+
+    // Indexes that have been opened by this JVM, by character set, so that all workers of a node share them
+    private static final Map<String, HintPermutationIndex> OPEN_INDEXES = new ConcurrentHashMap<>();
+
+    private final byte[] choices;
+    private final int numRecords;
+    private final MappedByteBuffer buffer;
+    private final int[] directory;
+
+    private HintPermutationIndex(byte[] choices, MappedByteBuffer buffer) {
+        this.choices = choices;
+        this.numRecords = (int) factorial(choices.length);
+        this.buffer = buffer;
+
+        // Find the first record of each bucket of the directory (plus an end marker)
+        this.directory = new int[(1 << DIRECTORY_BITS) + 1];
+        for (int b = 0; b < (1 << DIRECTORY_BITS); b++)
+            this.directory[b] = lowerBound(buffer, (long) b << (64 - DIRECTORY_BITS), 0, this.numRecords);
+        this.directory[1 << DIRECTORY_BITS] = this.numRecords;
+    }
+
+    /**
+     * Gets the index of the given character set from the given directory, building it if it does not exist yet.
+     * The index is only built once per JVM, and is shared by all callers afterwards.
+     */
+    public static HintPermutationIndex getOrBuild(Path directory, String charset) throws IOException {
+        byte[] choices = sortedChoices(charset);
+        String key = new String(choices, StandardCharsets.US_ASCII);
+
+        HintPermutationIndex index = OPEN_INDEXES.get(key);
+        if (index != null)
+            return index;
+
+        synchronized (OPEN_INDEXES) {
+            index = OPEN_INDEXES.get(key);
+            if (index == null) {
+                Path file = directory.resolve(getFileName(choices));
+                if (!Files.exists(file)) {
+                    Files.createDirectories(directory);
+                    build(file, key);
+                }
+
+                index = open(file);
+                OPEN_INDEXES.put(key, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return The name of the index file for the given character set, which does not depend on its order.
+     */
+    public static String getFileName(String charset) {
+        return getFileName(sortedChoices(charset));
+    }
+
+    private static String getFileName(byte[] choices) {
+        StringBuilder name = new StringBuilder("hints-");
+        for (byte c : choices)
+            name.append(String.format("%02x", c));
+        return name.append(".idx").toString();
+    }
+
+    /**
+     * Builds the index of the given character set into the given file. The file is written under a temporary name
+     * and moved into place once it is complete, so that a partially written index is never opened.
+     */
+    public static void build(Path file, String charset) throws IOException {
+        byte[] choices = sortedChoices(charset);
+        int numRecords = (int) factorial(choices.length);
+        Path tempFile = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) RECORD_SIZE * numRecords);
+
+            // Write the records in order of rank, hashing the permutations starting with each choice in parallel
+            IntStream.range(0, choices.length).parallel().forEach(first -> writeRecords(buffer.duplicate(), choices, first));
+
+            // Sort the records by (unsigned) digest word in place
+            Arrays.parallelQuickSort(0, numRecords,
+                    (a, b) -> Long.compareUnsigned(buffer.getLong(recordOffset(a)), buffer.getLong(recordOffset(b))),
+                    (a, b) -> {
+                        int offsetA = recordOffset(a), offsetB = recordOffset(b);
+                        long prefix = buffer.getLong(offsetA);
+                        int rank = buffer.getInt(offsetA + 8);
+                        buffer.putLong(offsetA, buffer.getLong(offsetB));
+                        buffer.putInt(offsetA + 8, buffer.getInt(offsetB + 8));
+                        buffer.putLong(offsetB, prefix);
+                        buffer.putInt(offsetB + 8, rank);
+                    });
+
+            // The header is written last, so that only complete files are valid
+            buffer.putInt(8, choices.length);
+            for (int i = 0; i < choices.length; i++)
+                buffer.put(12 + i, choices[i]);
+            buffer.putLong(0, MAGIC);
+            buffer.force();
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Opens an index file that has been written by {@link #build(Path, String)}.
+     */
+    public static HintPermutationIndex open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int numChoices = channel.size() >= HEADER_SIZE ? buffer.getInt(8) : -1;
+            if (numChoices <= 0 || numChoices > MAX_CHOICES || buffer.getLong(0) != MAGIC ||
+                    channel.size() != HEADER_SIZE + RECORD_SIZE * factorial(numChoices))
+                throw new IOException("HintPermutationIndex: '" + file + "' is not a valid index file.");
+
+            byte[] choices = new byte[numChoices];
+            for (int i = 0; i < numChoices; i++)
+                choices[i] = buffer.get(12 + i);
+
+            return new HintPermutationIndex(choices, buffer);
+        }
+    }
+
+    /**
+     * @return The (sorted) character set of the index.
+     */
+    public String getCharset() {
+        return new String(this.choices, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Cracks the hint hashes in the given table, which are hints of a permutation starting with the given prefix.
+     * @return A map containing the hint hashes as the key and the character missing in the hint as the value.
+     *         (NOTE: possibly not all hints could be cracked, in this case, the hint hash will not be in the map!)
+     */
+    public Map<SHA256Hash, Character> crack(DigestTable hintHashes, String prefix) {
+        // The permutations starting with the prefix have a contiguous range of ranks, so the records of the other
+        // permutations are skipped without unranking and rehashing them
+        int[] ranks = this.getRankRange(prefix != null ? prefix.getBytes(StandardCharsets.US_ASCII) : new byte[0]);
+        Map<SHA256Hash, Character> crackedHints = new HashMap<>();
+        if (ranks[0] == ranks[1])
+            return crackedHints;
+
+        ByteBuffer records = this.buffer.duplicate();
+        SHA256Engine engine = new SHA256Engine();
+        long[] digest = new long[SHA256Engine.DIGEST_LONGS];
+        byte[] permutation = new byte[this.choices.length];
+
+        for (int id = 0; id < hintHashes.idLimit(); id++) {
+            long w0 = hintHashes.getWord(id, 0);
+            if (hintHashes.indexOf(w0, hintHashes.getWord(id, 1), hintHashes.getWord(id, 2), hintHashes.getWord(id, 3)) != id)
+                continue; // The hash has been removed from the table
+
+            int bucket = (int) (w0 >>> (64 - DIRECTORY_BITS));
+            int end = this.directory[bucket + 1];
+            for (int r = lowerBound(records, w0, this.directory[bucket], end); r < end && records.getLong(recordOffset(r)) == w0; r++) {
+                int rank = records.getInt(recordOffset(r) + 8);
+                if (rank < ranks[0] || rank >= ranks[1])
+                    continue;
+
+                unrank(this.choices, rank, permutation);
+                engine.hash(permutation, 0, permutation.length - 1, digest);
+                if (digest[0] == w0 && digest[1] == hintHashes.getWord(id, 1) && digest[2] == hintHashes.getWord(id, 2) && digest[3] == hintHashes.getWord(id, 3)) {
+                    crackedHints.put(hintHashes.getHash(id), (char) permutation[permutation.length - 1]);
+                    break;
+                }
+            }
+        }
+        return crackedHints;
+    }
+
+    /**
+     * Writes the records of the permutations starting with the given choice, whose ranks form a contiguous range.
+     */
+    private static void writeRecords(ByteBuffer buffer, byte[] choices, int first) {
+        int n = choices.length;
+        int blockSize = (int) factorial(n - 1);
+
+        // The first permutation of the block is the given choice, followed by the remaining choices in order
+        byte[] permutation = new byte[n];
+        permutation[0] = choices[first];
+        for (int i = 0, j = 1; i < n; i++) {
+            if (i != first)
+                permutation[j++] = choices[i];
+        }
+
+        SHA256Engine engine = new SHA256Engine();
+        int batchSize = 256;
+        byte[] batch = new byte[batchSize * n];
+        long[] digests = new long[batchSize * SHA256Engine.DIGEST_LONGS];
+
+        int rank = first * blockSize;
+        for (int done = 0; done < blockSize; ) {
+            int count = Math.min(batchSize, blockSize - done);
+            for (int c = 0; c < count; c++) {
+                System.arraycopy(permutation, 0, batch, c * n, n);
+                nextPermutation(permutation);
+            }
+
+            engine.hashBatch(batch, n, n - 1, count, digests);
+            for (int c = 0; c < count; c++, rank++) {
+                buffer.putLong(recordOffset(rank), digests[c * SHA256Engine.DIGEST_LONGS]);
+                buffer.putInt(recordOffset(rank) + 8, rank);
+            }
+            done += count;
+        }
+    }
+
+    /**
+     * Advances the given array to the next permutation in lexicographic order (wrapping around after the last one).
+     */
+    private static void nextPermutation(byte[] a) {
+        int i = a.length - 2;
+        while (i >= 0 && a[i] >= a[i + 1])
+            i--;
+
+        if (i >= 0) {
+            int j = a.length - 1;
+            while (a[j] <= a[i])
+                j--;
+            byte tmp = a[i]; a[i] = a[j]; a[j] = tmp;
+        }
+
+        for (int l = i + 1, r = a.length - 1; l < r; l++, r--) {
+            byte tmp = a[l]; a[l] = a[r]; a[r] = tmp;
+        }
+    }
+
+    /**
+     * Writes the permutation with the given rank in lexicographic order of the (sorted) choices.
+     */
+    private static void unrank(byte[] choices, int rank, byte[] permutation) {
+        int n = choices.length;
+        boolean[] used = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            int f = (int) factorial(n - 1 - i);
+            int digit = rank / f;
+            rank %= f;
+
+            for (int j = 0; ; j++) {
+                if (!used[j] && digit-- == 0) {
+                    used[j] = true;
+                    permutation[i] = choices[j];
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The first record in [from, to) whose digest word is not less than the given one (unsigned).
+     */
+    private static int lowerBound(ByteBuffer records, long w0, int from, int to) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (Long.compareUnsigned(records.getLong(recordOffset(middle)), w0) < 0)
+                from = middle + 1;
+            else
+                to = middle;
+        }
+        return from;
+    }
+
+    private static int recordOffset(int record) {
+        return HEADER_SIZE + RECORD_SIZE * record;
+    }
+
+    /**
+     * @return The range [from, to) of the ranks of the permutations starting with the given prefix, which is empty
+     * if the prefix does not consist of distinct choices.
+     */
+    private int[] getRankRange(byte[] prefix) {
+        int n = this.choices.length;
+        if (prefix.length > n)
+            return new int[] { 0, 0 };
+
+        // The prefix gives the leading digits of the rank, like in unrank
+        boolean[] used = new boolean[n];
+        int from = 0;
+        for (int i = 0; i < prefix.length; i++) {
+            int digit = 0, j = 0;
+            while (j < n && this.choices[j] != prefix[i]) {
+                if (!used[j])
+                    digit++;
+                j++;
+            }
+            if (j == n || used[j])
+                return new int[] { 0, 0 };
+
+            used[j] = true;
+            from += digit * (int) factorial(n - 1 - i);
+        }
+        return new int[] { from, from + (int) factorial(n - prefix.length) };
+    }
+
+    private static byte[] sortedChoices(String charset) {
+        if (charset == null || charset.length() == 0 || charset.length() > MAX_CHOICES)
+            throw new IllegalArgumentException("HintPermutationIndex: the charset must have between 1 and " + MAX_CHOICES + " characters.");
+        if (!StandardCharsets.US_ASCII.newEncoder().canEncode(charset))
+            throw new IllegalArgumentException("HintPermutationIndex: the charset can only contain ASCII characters.");
+
+        byte[] choices = charset.getBytes(StandardCharsets.US_ASCII);
+        java.util.Arrays.sort(choices);
+        for (int i = 1; i < choices.length; i++) {
+            if (choices[i] == choices[i - 1])
+                throw new IllegalArgumentException("HintPermutationIndex: the charset can not contain repeated characters.");
+        }
+        return choices;
+    }
+
+    private static long factorial(int n) {
+        long f = 1;
+        for (int i = 2; i <= n; i++)
+            f *= i;
+        return f;
+    }
+}
@@ -1,5 +1,7 @@
 package de.hpi.ddm.configuration;
 
+import java.nio.charset.Charset;
+
 import com.beust.jcommander.Parameter;
 
 public abstract class Command {
@@ -14,5 +16,45 @@ public abstract class Command {
 
 	@Parameter(names = { "-w", "--numWorkers" }, description = "The number of workers (indexers/validators) to start locally; should be at least one if the algorithm is started standalone (otherwise there are no workers to run the discovery)", required = false)
 	int numWorkers = ConfigurationSingleton.get().getNumWorkers();
+
+	@Parameter(names = { "-nd", "--nodeDispatcher" }, description = "Start the local workers under a dispatcher, which registers with the master in their place, splits coarse work items among them and sends back their aggregated results", required = false)
+	boolean nodeDispatcher = ConfigurationSingleton.get().isNodeDispatcher();
+
+	@Parameter(names = { "-hi", "--hintIndexDirectory" }, description = "Directory of the precomputed hint permutation indexes, which are built on first use; if not given, hints are cracked by sweeping over the permutations", required = false)
+	String hintIndexDirectory = ConfigurationSingleton.get().getHintIndexDirectory();
+	
+	// DatasetDescriptor (the slaves only read the dataset, if the master asks them to scan chunks of it locally)
 	
+	@Parameter(names = { "-dn", "--datasetName" }, description = "Dataset name", required = false)
+	String datasetName = DatasetDescriptorSingleton.get().getDatasetName();
+
+	@Parameter(names = { "-dp", "--datasetPath" }, description = "Dataset path", required = false)
+	String datasetPath = DatasetDescriptorSingleton.get().getDatasetPath();
+
+	@Parameter(names = { "-de", "--datasetEnding" }, description = "Dataset ending; an ending like \".csv.gz\" marks a gzip-compressed file, which is decompressed while it is read", required = false)
+	String datasetEnding = DatasetDescriptorSingleton.get().getDatasetEnding();
+
+	@Parameter(names = { "-fh", "--fileHasHeader" }, description = "File has header as defined by the input data", required = false)
+	boolean fileHasHeader = DatasetDescriptorSingleton.get().isFileHasHeader();
+
+	@Parameter(names = { "-cs", "--charset" }, description = "Charset as defined by the input data", required = false)
+	Charset charset = DatasetDescriptorSingleton.get().getCharset();
+
+	@Parameter(names = { "-vs", "--valueSeparator" }, description = "Value separator as defined by the input data", required = false)
+	char attributeSeparator = DatasetDescriptorSingleton.get().getValueSeparator();
+
+	@Parameter(names = { "-vq", "--valueQuote" }, description = "Value quote as defined by the input data", required = false)
+	char attributeQuote = DatasetDescriptorSingleton.get().getValueQuote();
+
+	@Parameter(names = { "-ve", "--valueEscape" }, description = "Value escape as defined by the input data", required = false)
+	char attributeEscape = DatasetDescriptorSingleton.get().getValueEscape();
+
+	@Parameter(names = { "-vsq", "--valueStrictQuotes" }, description = "Value strict quotes as defined by the input data", required = false)
+	boolean attributeStrictQuotes = DatasetDescriptorSingleton.get().isValueStrictQuotes();
+
+	@Parameter(names = { "-viw", "--valueIgnoreLeadingWhitespace" }, description = "Ignore i.e. delete all whitespaces preceding any read value ", required = false)
+	boolean attributeIgnoreLeadingWhitespace = DatasetDescriptorSingleton.get().isValueIgnoreLeadingWhitespace();
+
+	@Parameter(names = { "-rsdl", "--readerSkipDifferingLines" }, description = "True if the reader should skip lines in the input that have a different length as the first line", required = false)
+	boolean readerSkipDifferingLines = DatasetDescriptorSingleton.get().isReaderSkipDifferingLines();
 }
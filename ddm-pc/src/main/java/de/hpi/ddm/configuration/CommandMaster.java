@@ -1,7 +1,5 @@
 package de.hpi.ddm.configuration;
 
-import java.nio.charset.Charset;
-
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
@@ -18,39 +16,25 @@ public class CommandMaster extends Command {
 
 	@Parameter(names = { "-bs", "--bufferSize" }, description = "Buffer for input reading (the DatasetReader pre-fetches and buffers this many records)", required = false)
 	int bufferSize = ConfigurationSingleton.get().getBufferSize();
-	
-	// DatasetDescriptor
-	
-	@Parameter(names = { "-dn", "--datasetName" }, description = "Dataset name", required = false)
-	String datasetName = DatasetDescriptorSingleton.get().getDatasetName();
-
-	@Parameter(names = { "-dp", "--datasetPath" }, description = "Dataset path", required = false)
-	String datasetPath = DatasetDescriptorSingleton.get().getDatasetPath();
-
-	@Parameter(names = { "-de", "--datasetEnding" }, description = "Dataset ending", required = false)
-	String datasetEnding = DatasetDescriptorSingleton.get().getDatasetEnding();
-
-	@Parameter(names = { "-fh", "--fileHasHeader" }, description = "File has header as defined by the input data", required = false)
-	boolean fileHasHeader = DatasetDescriptorSingleton.get().isFileHasHeader();
 
-	@Parameter(names = { "-cs", "--charset" }, description = "Charset as defined by the input data", required = false)
-	Charset charset = DatasetDescriptorSingleton.get().getCharset();
+	@Parameter(names = { "-bd", "--binaryDatasetDirectory" }, description = "Directory of the binary copies of the datasets, which are converted on first use and memory-mapped by the reader actor (instead of the other reader modes); if not given, the CSV file is parsed on every run", required = false)
+	String binaryDatasetDirectory = ConfigurationSingleton.get().getBinaryDatasetDirectory();
 
-	@Parameter(names = { "-vs", "--valueSeparator" }, description = "Value separator as defined by the input data", required = false)
-	char attributeSeparator = DatasetDescriptorSingleton.get().getValueSeparator();
+	@Parameter(names = { "-sr", "--streamReader" }, description = "Read the input with a backpressured Akka Streams pipeline, which parses the records in parallel, instead of inside the reader actor", required = false)
+	boolean streamReader = ConfigurationSingleton.get().isStreamReader();
 
-	@Parameter(names = { "-vq", "--valueQuote" }, description = "Value quote as defined by the input data", required = false)
-	char attributeQuote = DatasetDescriptorSingleton.get().getValueQuote();
+	@Parameter(names = { "-rt", "--readerThreads" }, description = "Number of threads that scan chunks of the input file concurrently; if 0, the reader actor scans the file sequentially", required = false)
+	int readerThreads = ConfigurationSingleton.get().getReaderThreads();
 
-	@Parameter(names = { "-ve", "--valueEscape" }, description = "Value escape as defined by the input data", required = false)
-	char attributeEscape = DatasetDescriptorSingleton.get().getValueEscape();
+	@Parameter(names = { "-ub", "--unorderedBatches" }, description = "Emit the records of the scanned chunks as soon as they are ready instead of in the order of the input file", required = false)
+	boolean unorderedBatches = ConfigurationSingleton.get().isUnorderedBatches();
 
-	@Parameter(names = { "-vsq", "--valueStrictQuotes" }, description = "Value strict quotes as defined by the input data", required = false)
-	boolean attributeStrictQuotes = DatasetDescriptorSingleton.get().isValueStrictQuotes();
+	@Parameter(names = { "-li", "--localIngestion" }, description = "Scan the chunks of the input file on the workers of all nodes, which read their own copy of the file (e.g. on a shared file system), instead of on the master", required = false)
+	boolean localIngestion = ConfigurationSingleton.get().isLocalIngestion();
 
-	@Parameter(names = { "-viw", "--valueIgnoreLeadingWhitespace" }, description = "Ignore i.e. delete all whitespaces preceding any read value ", required = false)
-	boolean attributeIgnoreLeadingWhitespace = DatasetDescriptorSingleton.get().isValueIgnoreLeadingWhitespace();
+	@Parameter(names = { "-mb", "--maxActiveBatches" }, description = "Maximum number of batches that the master processes concurrently; the next batch is read while the current ones finish", required = false)
+	int maxActiveBatches = ConfigurationSingleton.get().getMaxActiveBatches();
 
-	@Parameter(names = { "-rsdl", "--readerSkipDifferingLines" }, description = "True if the reader should skip lines in the input that have a different length as the first line", required = false)
-	boolean readerSkipDifferingLines = DatasetDescriptorSingleton.get().isReaderSkipDifferingLines();
+	@Parameter(names = { "-wc", "--workerCredit" }, description = "Maximum number of work items that a worker holds at once; the next ones wait at the worker, so that it does not idle for a round trip between them", required = false)
+	int workerCredit = ConfigurationSingleton.get().getWorkerCredit();
 }
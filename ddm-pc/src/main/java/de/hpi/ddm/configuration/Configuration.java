@@ -23,8 +23,26 @@ public class Configuration {
 	
 	private boolean startPaused = false;			// Wait for some console input to start; useful, if we want to wait manually until all ActorSystems in the cluster are started (e.g. to avoid work stealing effects in performance evaluations)
 	
+	private boolean nodeDispatcher = false;			// Start the local workers under a dispatcher, which registers with the master in their place, splits coarse work items among them and sends back their aggregated results
+	
+	private String hintIndexDirectory = null;		// Directory of the precomputed hint permutation indexes, which are built on first use; if null, hints are cracked by sweeping over the permutations
+	
 	private int bufferSize = 50; 					// Buffer for input reading (the DatasetReader pre-fetches and buffers this many records)
 	
+	private String binaryDatasetDirectory = null;	// Directory of the binary copies of the datasets, which are converted on first use and memory-mapped by the reader actor (instead of the other reader modes); if null, the CSV file is parsed on every run
+	
+	private boolean streamReader = false;			// Read the input with a backpressured Akka Streams pipeline, which parses the records in parallel, instead of inside the reader actor
+	
+	private int readerThreads = 0;					// Number of threads that scan chunks of the input file concurrently; if 0, the reader actor scans the file sequentially
+	
+	private boolean unorderedBatches = false;		// Emit the records of the scanned chunks as soon as they are ready instead of in the order of the input file
+	
+	private boolean localIngestion = false;			// Scan the chunks of the input file on the workers of all nodes, which read their own copy of the file (e.g. on a shared file system), instead of on the master
+	
+	private int maxActiveBatches = 2;				// Maximum number of batches that the master processes concurrently; the next batch is read while the current ones finish
+	
+	private int workerCredit = 2;					// Maximum number of work items that a worker holds at once; the next ones wait at the worker, so that it does not idle for a round trip between them
+	
 	private static String getDefaultHost() {
         try {
             return InetAddress.getLocalHost().getHostAddress();
@@ -37,8 +55,17 @@ public class Configuration {
 		this.host = commandMaster.host;
 		this.port = commandMaster.port;
 		this.numWorkers = commandMaster.numWorkers;
+		this.nodeDispatcher = commandMaster.nodeDispatcher;
+		this.hintIndexDirectory = commandMaster.hintIndexDirectory;
 		this.startPaused = commandMaster.startPaused;
 		this.bufferSize = commandMaster.bufferSize;
+		this.maxActiveBatches = commandMaster.maxActiveBatches;
+		this.workerCredit = commandMaster.workerCredit;
+		this.binaryDatasetDirectory = commandMaster.binaryDatasetDirectory;
+		this.streamReader = commandMaster.streamReader;
+		this.readerThreads = commandMaster.readerThreads;
+		this.unorderedBatches = commandMaster.unorderedBatches;
+		this.localIngestion = commandMaster.localIngestion;
 	}
 
 	public void update(CommandSlave commandSlave) {
@@ -47,5 +74,7 @@ public class Configuration {
 		this.masterHost = commandSlave.masterhost;
 		this.masterPort = commandSlave.masterport;
 		this.numWorkers = commandSlave.numWorkers;
+		this.nodeDispatcher = commandSlave.nodeDispatcher;
+		this.hintIndexDirectory = commandSlave.hintIndexDirectory;
 	}
 }
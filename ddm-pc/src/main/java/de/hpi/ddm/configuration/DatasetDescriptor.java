@@ -3,12 +3,15 @@ package de.hpi.ddm.configuration;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
 
 import com.opencsv.CSVParser;
 import com.opencsv.CSVParserBuilder;
@@ -16,6 +19,9 @@ import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.enums.CSVReaderNullFieldIndicator;
 
+import de.hpi.ddm.io.ReadAheadInputStream;
+import de.hpi.ddm.io.StudentRecordScanner;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -25,6 +31,9 @@ public class DatasetDescriptor implements Serializable {
 	
 	private static final long serialVersionUID = 1985782678973727520L;
 	
+	private static final String COMPRESSED_ENDING = ".gz";
+	private static final int DECOMPRESSION_BUFFER_SIZE = 1 << 16;
+	
 	private String datasetName = "passwords";
 	private String datasetPath = "data" + File.separator;
 	private String datasetEnding = ".csv";
@@ -47,24 +56,51 @@ public class DatasetDescriptor implements Serializable {
 		return this.datasetPath + pathNameSeparator + this.datasetName + nameEndingSeparator + this.datasetEnding;
 	}
 
-	public void update(CommandMaster commandMaster) {
-		this.datasetName = commandMaster.datasetName;
-		this.datasetPath = commandMaster.datasetPath;
-		this.datasetEnding = commandMaster.datasetEnding;
-		this.fileHasHeader = commandMaster.fileHasHeader;
-		this.charset = commandMaster.charset;
-		this.valueSeparator = commandMaster.attributeSeparator;
-		this.valueQuote = commandMaster.attributeQuote;
-		this.valueEscape = commandMaster.attributeEscape;
-		this.valueStrictQuotes = commandMaster.attributeStrictQuotes;
-		this.valueIgnoreLeadingWhitespace = commandMaster.attributeIgnoreLeadingWhitespace;
-		this.readerSkipDifferingLines = commandMaster.readerSkipDifferingLines;
+	public void update(Command command) {
+		this.datasetName = command.datasetName;
+		this.datasetPath = command.datasetPath;
+		this.datasetEnding = command.datasetEnding;
+		this.fileHasHeader = command.fileHasHeader;
+		this.charset = command.charset;
+		this.valueSeparator = command.attributeSeparator;
+		this.valueQuote = command.attributeQuote;
+		this.valueEscape = command.attributeEscape;
+		this.valueStrictQuotes = command.attributeStrictQuotes;
+		this.valueIgnoreLeadingWhitespace = command.attributeIgnoreLeadingWhitespace;
+		this.readerSkipDifferingLines = command.readerSkipDifferingLines;
 	}
 
-	public CSVReader createCSVReader() throws IOException {
-		Path path = Paths.get(this.datasetPath + this.datasetName + this.datasetEnding);
+	public Path getDatasetFile() {
+		return Paths.get(this.datasetPath + this.datasetName + this.datasetEnding);
+	}
+
+	/**
+	 * @return True if the dataset file is gzip-compressed (i.e. its ending is e.g. ".csv.gz"), so that it can only be
+	 * read as a stream and not be split into chunks.
+	 */
+	public boolean isCompressed() {
+		return this.datasetEnding.endsWith(COMPRESSED_ENDING);
+	}
+
+	/**
+	 * Opens the dataset file as a stream of its (decompressed) bytes. A compressed file is decompressed on a separate
+	 * thread, which stays a few blocks ahead of the reads.
+	 */
+	public InputStream openDatasetStream() throws IOException {
+		InputStream input = Files.newInputStream(this.getDatasetFile());
+		if (!this.isCompressed())
+			return input;
 		
-		CSVParser parser = new CSVParserBuilder()
+		try {
+			return new ReadAheadInputStream(new GZIPInputStream(input, DECOMPRESSION_BUFFER_SIZE));
+		} catch (IOException e) {
+			input.close();
+			throw e;
+		}
+	}
+
+	public CSVParser createCSVParser() {
+		return new CSVParserBuilder()
 				.withSeparator(this.valueSeparator)
 				.withQuoteChar(this.valueQuote)
 				.withEscapeChar(this.valueEscape)
@@ -72,9 +108,23 @@ public class DatasetDescriptor implements Serializable {
 				.withIgnoreLeadingWhiteSpace(this.valueIgnoreLeadingWhitespace)
 				.withFieldAsNull(CSVReaderNullFieldIndicator.EMPTY_SEPARATORS)
 				.build();
-		
-		BufferedReader buffer = Files.newBufferedReader(path, this.charset);
-		CSVReader reader = new CSVReaderBuilder(buffer).withCSVParser(parser).build();
+	}
+
+	public StudentRecordScanner createStudentRecordScanner() throws IOException {
+		if (this.isCompressed())
+			return new StudentRecordScanner(this.openDatasetStream(), this);
+		return new StudentRecordScanner(this.getDatasetFile(), this);
+	}
+
+	public StudentRecordScanner createStudentRecordScanner(long start, long end) throws IOException {
+		if (this.isCompressed())
+			throw new IllegalStateException("A compressed dataset cannot be scanned in chunks.");
+		return new StudentRecordScanner(this.getDatasetFile(), this, start, end);
+	}
+
+	public CSVReader createCSVReader() throws IOException {
+		BufferedReader buffer = new BufferedReader(new InputStreamReader(this.openDatasetStream(), this.charset));
+		CSVReader reader = new CSVReaderBuilder(buffer).withCSVParser(this.createCSVParser()).build();
 		
 		if (this.fileHasHeader)
 			reader.readNext();
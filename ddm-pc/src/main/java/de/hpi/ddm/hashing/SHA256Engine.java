@@ -0,0 +1,204 @@
+package de.hpi.ddm.hashing;
+
+/**
+ * Specialized SHA-256 implementation for messages that fit in a single 64-byte block (i.e. shorter than 56 bytes),
+ * which is always the case for the password and hint candidates generated by our crackers.
+ *
+ * In contrast to {@link java.security.MessageDigest}, this engine does not allocate anything per message:
+ * the message schedule is preallocated, and the digest is written into state owned by the caller.
+ * Instances are NOT thread-safe, so each thread should use its own engine.
+ */
+public final class SHA256Engine {
+    public static final int MAX_MESSAGE_LENGTH = 55;
+    public static final int DIGEST_INTS = 8;
+    public static final int DIGEST_LONGS = 4;
+
+    static final int[] K = {
+            0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+            0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+            0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+            0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+            0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+            0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+            0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+            0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    static final int H0 = 0x6a09e667, H1 = 0xbb67ae85, H2 = 0x3c6ef372, H3 = 0xa54ff53a,
+                     H4 = 0x510e527f, H5 = 0x9b05688c, H6 = 0x1f83d9ab, H7 = 0x5be0cd19;
+
+    /**
+     * Number of messages whose rounds are interleaved by {@link #hashBatch(byte[], int, int, int, long[])}.
+     * With more lanes, the state of all lanes no longer fits in the registers of a x86-64 CPU, and it gets slower.
+     */
+    public static final int LANES = 2;
+
+    // Preallocated message schedules, reused for every message hashed by this engine
+    private final int[] w = new int[64];
+    private final int[] schedules = new int[LANES * 64];
+
+    /**
+     * Hashes the given message, writing the digest as 8 big-endian words into the given state.
+     * @param message Buffer containing the message.
+     * @param offset Position of the first byte of the message in the buffer.
+     * @param length Length of the message, which must be at most {@link #MAX_MESSAGE_LENGTH}.
+     * @param digest Array of at least {@link #DIGEST_INTS} elements, where the digest will be written to.
+     */
+    public void hash(byte[] message, int offset, int length, int[] digest) {
+        this.compress(message, offset, length);
+
+        for (int i = 0; i < DIGEST_INTS; i++)
+            digest[i] = this.w[i];
+    }
+
+    /**
+     * Hashes the given message, writing the digest as 4 big-endian packed words into the given state.
+     * This is the same layout as {@link de.hpi.ddm.structures.SHA256Hash#getWord(int)}.
+     * @see #hash(byte[], int, int, int[])
+     */
+    public void hash(byte[] message, int offset, int length, long[] digest) {
+        this.compress(message, offset, length);
+
+        for (int i = 0; i < DIGEST_LONGS; i++)
+            digest[i] = packWords(this.w[2*i], this.w[2*i+1]);
+    }
+
+    /**
+     * Hashes a batch of fixed-length messages, which are stored contiguously in a buffer, with interleaved rounds
+     * (one lane per message), writing the digests as 4 big-endian packed words per message into the given state.
+     * @param messages Buffer containing the messages, where message i starts at position i * stride.
+     * @param stride Distance between the start of two consecutive messages in the buffer.
+     * @param length Length of each message, which must be at most {@link #MAX_MESSAGE_LENGTH} and at most the stride.
+     * @param count Number of messages in the buffer.
+     * @param digests Array of at least count * {@link #DIGEST_LONGS} elements, where the digests will be written to.
+     */
+    public void hashBatch(byte[] messages, int stride, int length, int count, long[] digests) {
+        if (length < 0 || length > MAX_MESSAGE_LENGTH || length > stride)
+            throw new IllegalArgumentException("SHA256Engine: messages must have between 0 and " + MAX_MESSAGE_LENGTH + " bytes, and fit in the stride.");
+        if (count < 0 || messages.length < count * stride || digests.length < count * DIGEST_LONGS)
+            throw new IllegalArgumentException("SHA256Engine: the buffers are too small for the given number of messages.");
+
+        int i = 0;
+        for (; i + LANES <= count; i += LANES)
+            this.compressLanes(messages, i * stride, stride, length, digests, i * DIGEST_LONGS);
+
+        for (; i < count; i++) {
+            this.compress(messages, i * stride, length);
+            for (int j = 0; j < DIGEST_LONGS; j++)
+                digests[i * DIGEST_LONGS + j] = packWords(this.w[2*j], this.w[2*j+1]);
+        }
+    }
+
+    /**
+     * Packs two consecutive 32-bit digest words into a 64-bit word, with the first word in the high bits.
+     */
+    public static long packWords(int hi, int lo) {
+        return ((long) hi << 32) | (lo & 0xffffffffL);
+    }
+
+    /**
+     * Runs the SHA-256 compression function over the (padded) message.
+     * On return, the first 8 positions of the message schedule contain the digest.
+     */
+    private void compress(byte[] message, int offset, int length) {
+        if (length < 0 || length > MAX_MESSAGE_LENGTH)
+            throw new IllegalArgumentException("SHA256Engine: messages must have between 0 and " + MAX_MESSAGE_LENGTH + " bytes.");
+
+        final int[] w = this.w;
+        loadBlock(message, offset, length, w, 0);
+
+        for (int i = 16; i < 64; i++) {
+            int w15 = w[i-15], w2 = w[i-2];
+            int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+            int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+            w[i] = w[i-16] + s0 + w[i-7] + s1;
+        }
+
+        int a = H0, b = H1, c = H2, d = H3, e = H4, f = H5, g = H6, h = H7;
+        for (int i = 0; i < 64; i++) {
+            int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11) ^ Integer.rotateRight(e, 25);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13) ^ Integer.rotateRight(a, 22);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+
+        w[0] = H0 + a;
+        w[1] = H1 + b;
+        w[2] = H2 + c;
+        w[3] = H3 + d;
+        w[4] = H4 + e;
+        w[5] = H5 + f;
+        w[6] = H6 + g;
+        w[7] = H7 + h;
+    }
+
+    /**
+     * Writes the padded message into the first 16 words of the message schedule starting at the given position.
+     */
+    private static void loadBlock(byte[] message, int offset, int length, int[] schedule, int base) {
+        // Load the message into the first 14 words, appending the '1' padding bit right after it
+        for (int i = 0; i < 14; i++) {
+            int word = 0;
+            for (int j = 4*i; j < 4*i + 4; j++) {
+                int b = j < length ? (message[offset + j] & 0xff) : (j == length ? 0x80 : 0);
+                word = (word << 8) | b;
+            }
+            schedule[base + i] = word;
+        }
+        // The last two words contain the message length in bits (which always fits in the lower word)
+        schedule[base + 14] = 0;
+        schedule[base + 15] = length << 3;
+    }
+
+    /**
+     * Runs the SHA-256 compression function over 2 messages at once, interleaving the rounds of all of them.
+     * Since the rounds of different messages are independent, the CPU can overlap their (otherwise serial) dependency chains.
+     */
+    private void compressLanes(byte[] messages, int offset, int stride, int length, long[] digests, int digestOffset) {
+        final int[] s = this.schedules;
+        for (int lane = 0; lane < LANES; lane++)
+            loadBlock(messages, offset + lane * stride, length, s, lane * 64);
+
+        for (int i = 16; i < 64; i++) {
+            int w15_0 = s[i - 15], w2_0 = s[i - 2];
+            s[i] = s[i - 16] + (Integer.rotateRight(w15_0, 7) ^ Integer.rotateRight(w15_0, 18) ^ (w15_0 >>> 3))
+                    + s[i - 7] + (Integer.rotateRight(w2_0, 17) ^ Integer.rotateRight(w2_0, 19) ^ (w2_0 >>> 10));
+            int w15_1 = s[64 + i - 15], w2_1 = s[64 + i - 2];
+            s[64 + i] = s[64 + i - 16] + (Integer.rotateRight(w15_1, 7) ^ Integer.rotateRight(w15_1, 18) ^ (w15_1 >>> 3))
+                    + s[64 + i - 7] + (Integer.rotateRight(w2_1, 17) ^ Integer.rotateRight(w2_1, 19) ^ (w2_1 >>> 10));
+        }
+
+        int a0 = H0, b0 = H1, c0 = H2, d0 = H3, e0 = H4, f0 = H5, g0 = H6, h0 = H7;
+        int a1 = H0, b1 = H1, c1 = H2, d1 = H3, e1 = H4, f1 = H5, g1 = H6, h1 = H7;
+        for (int i = 0; i < 64; i++) {
+            final int k = K[i];
+            int t1_0 = h0 + (Integer.rotateRight(e0, 6) ^ Integer.rotateRight(e0, 11) ^ Integer.rotateRight(e0, 25)) + ((e0 & f0) ^ (~e0 & g0)) + k + s[i];
+            int t2_0 = (Integer.rotateRight(a0, 2) ^ Integer.rotateRight(a0, 13) ^ Integer.rotateRight(a0, 22)) + ((a0 & b0) ^ (a0 & c0) ^ (b0 & c0));
+            int t1_1 = h1 + (Integer.rotateRight(e1, 6) ^ Integer.rotateRight(e1, 11) ^ Integer.rotateRight(e1, 25)) + ((e1 & f1) ^ (~e1 & g1)) + k + s[64 + i];
+            int t2_1 = (Integer.rotateRight(a1, 2) ^ Integer.rotateRight(a1, 13) ^ Integer.rotateRight(a1, 22)) + ((a1 & b1) ^ (a1 & c1) ^ (b1 & c1));
+            h0 = g0; g0 = f0; f0 = e0; e0 = d0 + t1_0; d0 = c0; c0 = b0; b0 = a0; a0 = t1_0 + t2_0;
+            h1 = g1; g1 = f1; f1 = e1; e1 = d1 + t1_1; d1 = c1; c1 = b1; b1 = a1; a1 = t1_1 + t2_1;
+        }
+
+        digests[digestOffset] = packWords(H0 + a0, H1 + b0);
+        digests[digestOffset + 1] = packWords(H2 + c0, H3 + d0);
+        digests[digestOffset + 2] = packWords(H4 + e0, H5 + f0);
+        digests[digestOffset + 3] = packWords(H6 + g0, H7 + h0);
+        digests[digestOffset + 4] = packWords(H0 + a1, H1 + b1);
+        digests[digestOffset + 5] = packWords(H2 + c1, H3 + d1);
+        digests[digestOffset + 6] = packWords(H4 + e1, H5 + f1);
+        digests[digestOffset + 7] = packWords(H6 + g1, H7 + h1);
+    }
+
+}
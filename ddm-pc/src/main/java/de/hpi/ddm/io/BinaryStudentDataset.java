@@ -0,0 +1,316 @@
+package de.hpi.ddm.io;
+
+import de.hpi.ddm.configuration.DatasetDescriptor;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary copy of a student dataset, which is converted from the CSV file once and memory-mapped afterwards,
+ * so that repeated runs on the same input neither parse the values nor decode the hex digests again.
+ *
+ * The file stores the records column by column: the ids, the names in a blob indexed by offsets, the password
+ * characters as indexes into a dictionary (since the students share few character sets), the password lengths,
+ * and the raw digests of the passwords and hints (with offsets, since the number of hints may differ).
+ * Each column is mapped separately and must be smaller than 2 GB. The header identifies the CSV file by its size
+ * and modification time, and stores the settings it was parsed with, so that a copy of a changed file (or of a file
+ * that is parsed differently) is converted again.
+ */
+public class BinaryStudentDataset {
+    private static final long MAGIC = 0x44444d5354554453L; // "DDMSTUDS"
+    private static final int HEADER_SIZE = 128;
+    private static final int SETTINGS_OFFSET = 28;
+    private static final int SETTINGS_SIZE = 12;
+    private static final int SECTIONS_OFFSET = 40;
+    private static final int HASH_SIZE = SHA256Hash.SHA256_DIGEST_LENGTH;
+
+    // The columns of the file, in the order of their sections
+    private static final int IDS = 0;
+    private static final int FLAGS = 1;
+    private static final int NAME_OFFSETS = 2;
+    private static final int NAMES = 3;
+    private static final int CHARSET_INDEXES = 4;
+    private static final int CHARSET_OFFSETS = 5;
+    private static final int CHARSETS = 6;
+    private static final int LENGTHS = 7;
+    private static final int PASSWORD_HASHES = 8;
+    private static final int HINT_OFFSETS = 9;
+    private static final int HINT_HASHES = 10;
+    private static final int NUM_SECTIONS = 11;
+
+    private static final byte NULL_NAME = 1;
+    private static final int NULL_CHARSET = -1;
+
+    // The flags of the parser settings
+    private static final byte FILE_HAS_HEADER = 1;
+    private static final byte STRICT_QUOTES = 2;
+    private static final byte IGNORE_LEADING_WHITESPACE = 4;
+
+    private final long sourceSize;
+    private final long sourceLastModified;
+    private final byte[] sourceSettings;
+    private final int numRecords;
+    private final ByteBuffer[] sections;
+    private final String[] charsets;
+
+    private BinaryStudentDataset(long sourceSize, long sourceLastModified, byte[] sourceSettings, int numRecords, ByteBuffer[] sections) {
+        this.sourceSize = sourceSize;
+        this.sourceLastModified = sourceLastModified;
+        this.sourceSettings = sourceSettings;
+        this.numRecords = numRecords;
+        this.sections = sections;
+
+        // The dictionary is decoded once, so that the records share the strings of their password characters
+        int numCharsets = sections[CHARSET_OFFSETS].capacity() / 4 - 1;
+        this.charsets = new String[numCharsets];
+        for (int i = 0; i < numCharsets; i++)
+            this.charsets[i] = decode(sections[CHARSETS], sections[CHARSET_OFFSETS].getInt(4 * i), sections[CHARSET_OFFSETS].getInt(4 * i + 4));
+    }
+
+    /**
+     * Gets the binary copy of the dataset of the given descriptor from the given directory, converting the dataset
+     * if there is no copy yet or if the copy was converted from a different version of the CSV file or with different
+     * parser settings.
+     */
+    public static BinaryStudentDataset getOrConvert(Path directory, DatasetDescriptor descriptor) throws IOException {
+        Path file = directory.resolve(getFileName(descriptor));
+        Path source = descriptor.getDatasetFile();
+
+        if (Files.exists(file)) {
+            BinaryStudentDataset dataset = open(file);
+            if (dataset.sourceSize == Files.size(source) && dataset.sourceLastModified == Files.getLastModifiedTime(source).toMillis()
+                    && Arrays.equals(dataset.sourceSettings, getSettings(descriptor)))
+                return dataset;
+        }
+
+        Files.createDirectories(directory);
+        convert(descriptor, file);
+        return open(file);
+    }
+
+    /**
+     * @return The name of the binary copy of the dataset of the given descriptor.
+     */
+    public static String getFileName(DatasetDescriptor descriptor) {
+        return descriptor.getDatasetName() + ".students";
+    }
+
+    /**
+     * Converts the dataset of the given descriptor into the given file. The columns are first written to temporary
+     * files and then concatenated under a temporary name, which is moved into place once the file is complete,
+     * so that a partially written file is never opened.
+     */
+    public static void convert(DatasetDescriptor descriptor, Path file) throws IOException {
+        Path source = descriptor.getDatasetFile();
+        long sourceSize = Files.size(source);
+        long sourceLastModified = Files.getLastModifiedTime(source).toMillis();
+        String tempName = file.getFileName() + "." + UUID.randomUUID();
+        Path tempFile = file.resolveSibling(tempName + ".tmp");
+
+        Path[] columnFiles = new Path[NUM_SECTIONS];
+        DataOutputStream[] columns = new DataOutputStream[NUM_SECTIONS];
+        try {
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                columnFiles[i] = file.resolveSibling(tempName + "." + i + ".tmp");
+                columns[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(columnFiles[i], StandardOpenOption.CREATE_NEW)));
+            }
+
+            int numRecords = 0;
+            int nameOffset = 0;
+            int hintOffset = 0;
+            Map<String, Integer> charsetIndexes = new HashMap<>();
+            List<String> charsets = new ArrayList<>();
+
+            columns[NAME_OFFSETS].writeInt(0);
+            columns[HINT_OFFSETS].writeInt(0);
+            try (StudentRecordScanner scanner = descriptor.createStudentRecordScanner()) {
+                StudentRecord record;
+                while ((record = scanner.next()) != null) {
+                    numRecords++;
+                    columns[IDS].writeInt(record.getId());
+                    columns[FLAGS].writeByte(record.getName() == null ? NULL_NAME : 0);
+
+                    if (record.getName() != null) {
+                        byte[] name = record.getName().getBytes(StandardCharsets.UTF_8);
+                        columns[NAMES].write(name);
+                        nameOffset = Math.addExact(nameOffset, name.length);
+                    }
+                    columns[NAME_OFFSETS].writeInt(nameOffset);
+
+                    int charsetIndex = NULL_CHARSET;
+                    if (record.getPasswordChars() != null) {
+                        charsetIndex = charsetIndexes.computeIfAbsent(record.getPasswordChars(), chars -> {
+                            charsets.add(chars);
+                            return charsets.size() - 1;
+                        });
+                    }
+                    columns[CHARSET_INDEXES].writeInt(charsetIndex);
+                    columns[LENGTHS].writeInt(record.getPasswordLength());
+
+                    writeHash(columns[PASSWORD_HASHES], record.getFullPasswordHash());
+                    for (SHA256Hash hintHash : record.getHintHashes())
+                        writeHash(columns[HINT_HASHES], hintHash);
+                    hintOffset = Math.addExact(hintOffset, record.getHintHashes().length);
+                    columns[HINT_OFFSETS].writeInt(hintOffset);
+                }
+            }
+
+            int charsetOffset = 0;
+            columns[CHARSET_OFFSETS].writeInt(0);
+            for (String chars : charsets) {
+                byte[] bytes = chars.getBytes(StandardCharsets.UTF_8);
+                columns[CHARSETS].write(bytes);
+                charsetOffset += bytes.length;
+                columns[CHARSET_OFFSETS].writeInt(charsetOffset);
+            }
+
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                columns[i].close();
+                columns[i] = null;
+            }
+
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putLong(8, sourceSize);
+                header.putLong(16, sourceLastModified);
+                header.putInt(24, numRecords);
+                header.position(SETTINGS_OFFSET);
+                header.put(getSettings(descriptor));
+                header.clear();
+
+                // The sections follow the header, and each one ends where the next one starts
+                channel.position(HEADER_SIZE);
+                for (int i = 0; i < NUM_SECTIONS; i++) {
+                    header.putLong(SECTIONS_OFFSET + 8 * i, channel.position());
+                    try (FileChannel column = FileChannel.open(columnFiles[i], StandardOpenOption.READ)) {
+                        long size = column.size();
+                        for (long transferred = 0; transferred < size; )
+                            transferred += column.transferTo(transferred, size - transferred, channel);
+                    }
+                }
+
+                // The header is written last, so that only complete files are valid
+                header.putLong(0, MAGIC);
+                channel.write(header, 0);
+                channel.force(true);
+            }
+        } finally {
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                if (columns[i] != null)
+                    columns[i].close();
+                if (columnFiles[i] != null)
+                    Files.deleteIfExists(columnFiles[i]);
+            }
+        }
+
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Opens a file that has been written by {@link #convert(DatasetDescriptor, Path)}.
+     */
+    public static BinaryStudentDataset open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (fileSize < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE || header.getLong(0) != MAGIC)
+                throw new IOException("BinaryStudentDataset: '" + file + "' is not a valid dataset file.");
+
+            ByteBuffer[] sections = new ByteBuffer[NUM_SECTIONS];
+            for (int i = 0; i < NUM_SECTIONS; i++) {
+                long start = header.getLong(SECTIONS_OFFSET + 8 * i);
+                long end = i + 1 < NUM_SECTIONS ? header.getLong(SECTIONS_OFFSET + 8 * (i + 1)) : fileSize;
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+
+            byte[] settings = new byte[SETTINGS_SIZE];
+            header.position(SETTINGS_OFFSET);
+            header.get(settings);
+
+            return new BinaryStudentDataset(header.getLong(8), header.getLong(16), settings, header.getInt(24), sections);
+        }
+    }
+
+    /**
+     * @return The number of records of the dataset.
+     */
+    public int size() {
+        return this.numRecords;
+    }
+
+    /**
+     * @return The record at the given index, in the order of the CSV file.
+     */
+    public StudentRecord get(int index) {
+        String name = null;
+        if ((this.sections[FLAGS].get(index) & NULL_NAME) == 0)
+            name = decode(this.sections[NAMES], this.sections[NAME_OFFSETS].getInt(4 * index), this.sections[NAME_OFFSETS].getInt(4 * index + 4));
+
+        int charsetIndex = this.sections[CHARSET_INDEXES].getInt(4 * index);
+        String passwordChars = charsetIndex != NULL_CHARSET ? this.charsets[charsetIndex] : null;
+
+        int firstHint = this.sections[HINT_OFFSETS].getInt(4 * index);
+        SHA256Hash[] hintHashes = new SHA256Hash[this.sections[HINT_OFFSETS].getInt(4 * index + 4) - firstHint];
+        for (int i = 0; i < hintHashes.length; i++)
+            hintHashes[i] = readHash(this.sections[HINT_HASHES], firstHint + i);
+
+        return new StudentRecord(this.sections[IDS].getInt(4 * index), name, passwordChars, this.sections[LENGTHS].getInt(4 * index),
+                readHash(this.sections[PASSWORD_HASHES], index), hintHashes);
+    }
+
+    /**
+     * @return The settings that the records of the dataset of the given descriptor are parsed with, as stored in the
+     * header. The charset is only stored by the hash of its name, since the header has no room for the name itself.
+     */
+    private static byte[] getSettings(DatasetDescriptor descriptor) {
+        byte flags = 0;
+        if (descriptor.isFileHasHeader())
+            flags |= FILE_HAS_HEADER;
+        if (descriptor.isValueStrictQuotes())
+            flags |= STRICT_QUOTES;
+        if (descriptor.isValueIgnoreLeadingWhitespace())
+            flags |= IGNORE_LEADING_WHITESPACE;
+
+        ByteBuffer settings = ByteBuffer.allocate(SETTINGS_SIZE);
+        settings.putChar(descriptor.getValueSeparator());
+        settings.putChar(descriptor.getValueQuote());
+        settings.putChar(descriptor.getValueEscape());
+        settings.put(flags);
+        settings.position(8);
+        settings.putInt(descriptor.getCharset().name().hashCode());
+        return settings.array();
+    }
+
+    private static void writeHash(DataOutputStream output, SHA256Hash hash) throws IOException {
+        for (int i = 0; i < 4; i++)
+            output.writeLong(hash.getWord(i));
+    }
+
+    private static SHA256Hash readHash(ByteBuffer buffer, int index) {
+        int offset = index * HASH_SIZE;
+        return SHA256Hash.fromWords(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16), buffer.getLong(offset + 24));
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++)
+            bytes[i - start] = buffer.get(i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,162 @@
+package de.hpi.ddm.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reads a source stream on a separate thread into a bounded number of blocks, from which it is consumed.
+ *
+ * This moves expensive work of the source, like the decompression of a gzip stream, off the thread that parses the
+ * data. The reading thread fills at most as many blocks ahead as there are buffers, and the consumer hands each block
+ * back once it has been read, so the buffers are reused. Errors of the source are rethrown on the next read.
+ */
+public class ReadAheadInputStream extends InputStream {
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    private static final int DEFAULT_NUM_BLOCKS = 4;
+
+    private static class Block {
+        private final byte[] bytes;
+        private final int length;
+        private final IOException error;
+
+        private Block(byte[] bytes, int length, IOException error) {
+            this.bytes = bytes;
+            this.length = length;
+            this.error = error;
+        }
+    }
+
+    private static final Block END = new Block(null, 0, null);
+
+    private final InputStream source;
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final BlockingQueue<Block> filledBlocks = new LinkedBlockingQueue<>();
+    private final Thread thread;
+
+    private Block current;
+    private int position;
+    private IOException error;
+    private boolean ended;
+    private boolean closed;
+
+    public ReadAheadInputStream(InputStream source) {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_NUM_BLOCKS);
+    }
+
+    public ReadAheadInputStream(InputStream source, int blockSize, int numBlocks) {
+        this.source = source;
+        this.freeBuffers = new ArrayBlockingQueue<>(numBlocks);
+        for (int i = 0; i < numBlocks; i++)
+            this.freeBuffers.add(new byte[blockSize]);
+
+        this.thread = new Thread(this::readAhead, "read-ahead");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!this.fill())
+            return -1;
+        return this.current.bytes[this.position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0)
+            return 0;
+        if (!this.fill())
+            return -1;
+
+        int n = Math.min(length, this.current.length - this.position);
+        System.arraycopy(this.current.bytes, this.position, bytes, offset, n);
+        this.position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (this.closed)
+            throw new IOException("The stream is closed.");
+        return this.current != null ? this.current.length - this.position : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+
+        // The reading thread closes the source, so that it is not closed in the middle of a read
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Makes sure that the current block has unread bytes, taking the next block if needed.
+     * @return False at the end of the source.
+     */
+    private boolean fill() throws IOException {
+        if (this.closed)
+            throw new IOException("The stream is closed.");
+
+        while (this.current == null || this.position == this.current.length) {
+            if (this.current != null) {
+                this.freeBuffers.add(this.current.bytes);
+                this.current = null;
+            }
+            if (this.error != null)
+                throw new IOException("Reading the source stream failed.", this.error);
+            if (this.ended)
+                return false;
+
+            Block block;
+            try {
+                block = this.filledBlocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the source stream.");
+            }
+
+            if (block.error != null)
+                this.error = block.error;
+            else if (block == END)
+                this.ended = true;
+            else
+                this.current = block;
+            this.position = 0;
+        }
+        return true;
+    }
+
+    private void readAhead() {
+        try (InputStream source = this.source) {
+            while (true) {
+                byte[] bytes = this.freeBuffers.take();
+
+                int length = 0, n = 0;
+                while (length < bytes.length && (n = source.read(bytes, length, bytes.length - length)) >= 0)
+                    length += n;
+
+                if (length > 0)
+                    this.filledBlocks.add(new Block(bytes, length, null));
+                if (n < 0) {
+                    this.filledBlocks.add(END);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            this.filledBlocks.add(new Block(null, 0, e));
+        } catch (InterruptedException e) {
+            // The stream has been closed
+        }
+    }
+}
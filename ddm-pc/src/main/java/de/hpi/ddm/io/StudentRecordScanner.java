@@ -0,0 +1,436 @@
+package de.hpi.ddm.io;
+
+import de.hpi.ddm.configuration.DatasetDescriptor;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the student records of a dataset file, which is memory-mapped and tokenized in place.
+ *
+ * Unlike a CSV reader, the scanner does not create a string for each value. Plain values are parsed straight from the
+ * mapped file (e.g. the hex digests into the words of the hashes), and only the values that contain quotes or escapes
+ * are copied into a reused scratch buffer to be unescaped. The quoting rules of the dataset descriptor are the same
+ * as those of the CSV parser (see {@link DatasetDescriptor#createCSVParser()}), so quoted values may contain
+ * separators and line breaks. Empty unquoted values are read as null.
+ *
+ * The file is mapped in windows, so it can be larger than the address space of a single mapping,
+ * as long as each record fits into a window. The charset of the file must encode the separator,
+ * quote and escape characters as single bytes, like UTF-8 or ISO-8859-1 do.
+ *
+ * A scanner can also be restricted to a byte range of the file, so that several scanners read the file in chunks.
+ * It then reads the records that start inside of the range: the partial line at the start of the range belongs
+ * to the previous range, and the last record is read to its end, even if that is behind the range. Since the
+ * ranges are aligned to line breaks, they must not split quoted values that span multiple lines.
+ *
+ * Alternatively, the scanner reads the records from a stream (e.g. of a compressed file), which is buffered in a
+ * window on the heap instead. The window is refilled with the rest of the stream behind the current record, and it
+ * grows if a record does not fit into it.
+ */
+public class StudentRecordScanner implements Closeable {
+    private static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+    private static final int DEFAULT_STREAM_WINDOW_SIZE = 1 << 20;
+    private static final int NEEDS_REMAP = -1;
+
+    // Value of each hex digit by its byte, or -1 for the other bytes
+    private static final byte[] HEX_VALUES = new byte[256];
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            HEX_VALUES['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    // Either the file is mapped from its channel, or the window is filled from the stream
+    private final FileChannel channel;
+    private final InputStream input;
+    private long fileSize;
+    private long rangeEnd;
+    private final long windowSize;
+
+    private final Charset charset;
+    private final byte separator;
+    private final byte quote;
+    private final byte escape;
+    private final boolean strictQuotes;
+    private final boolean ignoreLeadingWhitespace;
+
+    private ByteBuffer window;
+    private long windowOffset;
+    private int position;
+
+    // Values of the current record, as ranges of either the window or the scratch buffer
+    private int numFields;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldsInScratch = new boolean[16];
+    private boolean[] fieldsQuoted = new boolean[16];
+    private byte[] scratch = new byte[1024];
+    private int scratchSize;
+
+    public StudentRecordScanner(Path file, DatasetDescriptor descriptor) throws IOException {
+        this(file, descriptor, 0, Long.MAX_VALUE, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a scanner for the records that start in the byte range [start, end) of the file.
+     */
+    public StudentRecordScanner(Path file, DatasetDescriptor descriptor, long start, long end) throws IOException {
+        this(file, descriptor, start, end, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a scanner for the records of the given stream, which is closed with the scanner.
+     */
+    public StudentRecordScanner(InputStream input, DatasetDescriptor descriptor) throws IOException {
+        this(input, descriptor, DEFAULT_STREAM_WINDOW_SIZE);
+    }
+
+    StudentRecordScanner(InputStream input, DatasetDescriptor descriptor, int windowSize) throws IOException {
+        this(descriptor, null, input, windowSize);
+
+        // The size of the stream is only known once it has been read to its end
+        this.fileSize = Long.MAX_VALUE;
+        this.rangeEnd = Long.MAX_VALUE;
+        this.window = ByteBuffer.allocate(windowSize);
+        this.window.limit(0);
+
+        this.map(0);
+        if (descriptor.isFileHasHeader())
+            this.scanRecord();
+    }
+
+    StudentRecordScanner(Path file, DatasetDescriptor descriptor, long start, long end, long windowSize) throws IOException {
+        this(descriptor, FileChannel.open(file, StandardOpenOption.READ), null, windowSize);
+
+        this.fileSize = this.channel.size();
+        this.rangeEnd = Math.min(end, this.fileSize);
+
+        if (start > 0) {
+            // A record starts at the range, if the range starts right after a line break
+            this.map(Math.min(start - 1, this.fileSize));
+            this.skipLine();
+        } else {
+            this.map(0);
+            if (descriptor.isFileHasHeader())
+                this.scanRecord();
+        }
+    }
+
+    private StudentRecordScanner(DatasetDescriptor descriptor, FileChannel channel, InputStream input, long windowSize) {
+        this.charset = descriptor.getCharset();
+        this.separator = toSingleByte(descriptor.getValueSeparator(), this.charset);
+        this.quote = toSingleByte(descriptor.getValueQuote(), this.charset);
+        this.escape = toSingleByte(descriptor.getValueEscape(), this.charset);
+        this.strictQuotes = descriptor.isValueStrictQuotes();
+        this.ignoreLeadingWhitespace = descriptor.isValueIgnoreLeadingWhitespace();
+
+        this.channel = channel;
+        this.input = input;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @return The next student record, or null at the end of the file.
+     */
+    public StudentRecord next() throws IOException {
+        if (!this.scanRecord())
+            return null;
+
+        if (this.numFields < 5)
+            throw new IllegalArgumentException("A student record line must have at least 5 fields.");
+
+        SHA256Hash[] hintHashes = new SHA256Hash[this.numFields - 5];
+        for (int i = 0; i < hintHashes.length; i++)
+            hintHashes[i] = this.parseHash(5 + i);
+
+        return new StudentRecord(this.parseInt(0), this.parseString(1), this.parseString(2), this.parseInt(3),
+                this.parseHash(4), hintHashes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+        if (this.channel != null)
+            this.channel.close();
+        if (this.input != null)
+            this.input.close();
+    }
+
+    private static byte toSingleByte(char c, Charset charset) {
+        byte[] bytes = String.valueOf(c).getBytes(charset);
+        if (bytes.length != 1)
+            throw new IllegalArgumentException("The character '" + c + "' must be encoded as a single byte in " + charset + ".");
+        return bytes[0];
+    }
+
+    private void map(long offset) throws IOException {
+        if (this.channel != null)
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(this.windowSize, this.fileSize - offset));
+        else
+            this.fill(offset);
+        this.windowOffset = offset;
+        this.position = 0;
+    }
+
+    /**
+     * Moves the bytes of the window from the given offset of the stream to its start and fills the rest of the window
+     * from the stream. If the window is not moved ahead (because a record does not fit into it), it grows instead.
+     */
+    private void fill(long offset) throws IOException {
+        this.window.position((int) (offset - this.windowOffset));
+        this.window.compact();
+        if (!this.window.hasRemaining()) {
+            ByteBuffer window = ByteBuffer.allocate(2 * this.window.capacity());
+            this.window.flip();
+            window.put(this.window);
+            this.window = window;
+        }
+
+        byte[] bytes = this.window.array();
+        while (this.window.hasRemaining()) {
+            int n = this.input.read(bytes, this.window.position(), this.window.remaining());
+            if (n < 0) {
+                this.fileSize = offset + this.window.position();
+                this.rangeEnd = Math.min(this.rangeEnd, this.fileSize);
+                break;
+            }
+            this.window.position(this.window.position() + n);
+        }
+        this.window.flip();
+    }
+
+    /**
+     * Moves the position behind the next line break.
+     */
+    private void skipLine() throws IOException {
+        while (this.windowOffset + this.position < this.fileSize) {
+            int limit = this.window.limit();
+            for (int pos = this.position; pos < limit; pos++) {
+                if (this.window.get(pos) == '\n') {
+                    this.position = pos + 1;
+                    return;
+                }
+            }
+            this.map(this.windowOffset + limit);
+        }
+    }
+
+    /**
+     * Tokenizes the next non-empty record into the fields of this scanner.
+     * @return False at the end of the range.
+     */
+    private boolean scanRecord() throws IOException {
+        while (this.windowOffset + this.position < this.rangeEnd) {
+            int start = this.position;
+            int end = this.tokenize(start);
+            if (end == NEEDS_REMAP) {
+                if (start == 0 && this.channel != null)
+                    throw new IOException("A record of the dataset is larger than the mapped window of " + this.windowSize + " bytes.");
+                this.map(this.windowOffset + start);
+                continue;
+            }
+
+            this.position = end;
+            boolean emptyLine = this.numFields == 1 && !this.fieldsQuoted[0] && this.fieldEnds[0] == this.fieldStarts[0];
+            if (!emptyLine)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Splits the record starting at the given position of the window into fields.
+     * @return The position after the record, or NEEDS_REMAP if the record continues after the end of the window.
+     */
+    private int tokenize(int start) {
+        int limit = this.window.limit();
+        boolean atEndOfFile = this.windowOffset + limit >= this.fileSize;
+
+        this.numFields = 0;
+        this.scratchSize = 0;
+        this.startField(start);
+
+        boolean inQuotes = false;
+        boolean leading = true;
+        for (int pos = start; pos < limit; pos++) {
+            byte b = this.window.get(pos);
+
+            // Escaped and doubled quotes can only be detected by looking at the next byte
+            byte next = 0;
+            if (b == this.escape || b == this.quote) {
+                if (pos + 1 < limit)
+                    next = this.window.get(pos + 1);
+                else if (!atEndOfFile)
+                    return NEEDS_REMAP;
+            }
+
+            if (inQuotes) {
+                if (b == this.escape && pos + 1 < limit && (next == this.quote || next == this.escape)) {
+                    this.appendScratch(next);
+                    pos++;
+                } else if (b == this.quote && pos + 1 < limit && next == this.quote) {
+                    this.appendScratch(this.quote);
+                    pos++;
+                } else if (b == this.quote) {
+                    inQuotes = false;
+                } else {
+                    this.appendScratch(b);
+                }
+                continue;
+            }
+
+            if (b == this.separator || b == '\n') {
+                this.endField(pos);
+                if (b == '\n')
+                    return pos + 1;
+                this.startField(pos + 1);
+                leading = true;
+            } else if (leading && this.ignoreLeadingWhitespace && (b == ' ' || b == '\t')) {
+                if (!this.fieldsInScratch[this.numFields])
+                    this.fieldStarts[this.numFields] = pos + 1;
+            } else if (b == this.quote) {
+                this.moveFieldToScratch(pos);
+                this.fieldsQuoted[this.numFields] = true;
+                inQuotes = true;
+                leading = false;
+            } else if (b == this.escape && pos + 1 < limit && (next == this.quote || next == this.escape)) {
+                this.moveFieldToScratch(pos);
+                if (!this.strictQuotes)
+                    this.appendScratch(next);
+                pos++;
+                leading = false;
+            } else {
+                leading = false;
+                if (this.strictQuotes)
+                    this.moveFieldToScratch(pos); // Characters outside of quotes are ignored
+                else if (this.fieldsInScratch[this.numFields] && b != '\r')
+                    this.appendScratch(b);
+            }
+        }
+
+        if (!atEndOfFile)
+            return NEEDS_REMAP;
+
+        // The last record of the file might not end with a line break
+        this.endField(limit);
+        return limit;
+    }
+
+    private void startField(int start) {
+        if (this.numFields == this.fieldStarts.length) {
+            int capacity = 2 * this.fieldStarts.length;
+            this.fieldStarts = Arrays.copyOf(this.fieldStarts, capacity);
+            this.fieldEnds = Arrays.copyOf(this.fieldEnds, capacity);
+            this.fieldsInScratch = Arrays.copyOf(this.fieldsInScratch, capacity);
+            this.fieldsQuoted = Arrays.copyOf(this.fieldsQuoted, capacity);
+        }
+        this.fieldStarts[this.numFields] = start;
+        this.fieldsInScratch[this.numFields] = this.strictQuotes;
+        this.fieldsQuoted[this.numFields] = false;
+        if (this.strictQuotes)
+            this.fieldStarts[this.numFields] = this.scratchSize;
+    }
+
+    private void endField(int end) {
+        int field = this.numFields;
+        if (this.fieldsInScratch[field]) {
+            this.fieldEnds[field] = this.scratchSize;
+        } else {
+            // The carriage return of a Windows line break is not part of the value
+            if (end > this.fieldStarts[field] && this.window.get(end - 1) == '\r')
+                end--;
+            this.fieldEnds[field] = end;
+        }
+        this.numFields++;
+    }
+
+    /**
+     * Copies the current field up to the given position into the scratch buffer, where it is unescaped from now on.
+     */
+    private void moveFieldToScratch(int end) {
+        int field = this.numFields;
+        if (this.fieldsInScratch[field])
+            return;
+
+        int start = this.fieldStarts[field];
+        this.fieldStarts[field] = this.scratchSize;
+        this.fieldsInScratch[field] = true;
+        for (int pos = start; pos < end; pos++)
+            this.appendScratch(this.window.get(pos));
+    }
+
+    private void appendScratch(byte b) {
+        if (this.scratchSize == this.scratch.length)
+            this.scratch = Arrays.copyOf(this.scratch, 2 * this.scratch.length);
+        this.scratch[this.scratchSize++] = b;
+    }
+
+    private byte byteAt(int field, int index) {
+        return this.fieldsInScratch[field] ? this.scratch[index] : this.window.get(index);
+    }
+
+    private int parseInt(int field) {
+        int start = this.fieldStarts[field], end = this.fieldEnds[field];
+        boolean negative = start < end && this.byteAt(field, start) == '-';
+        if (negative)
+            start++;
+        if (start == end)
+            throw new NumberFormatException("A student record contains an empty number.");
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = this.byteAt(field, i) - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("A student record contains an invalid number.");
+            value = 10 * value + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private String parseString(int field) {
+        int start = this.fieldStarts[field], end = this.fieldEnds[field];
+        if (start == end && !this.fieldsQuoted[field])
+            return null;
+
+        if (this.fieldsInScratch[field])
+            return new String(this.scratch, start, end - start, this.charset);
+
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++)
+            bytes[i - start] = this.window.get(i);
+        return new String(bytes, this.charset);
+    }
+
+    private SHA256Hash parseHash(int field) {
+        int start = this.fieldStarts[field], end = this.fieldEnds[field];
+        if (end - start != 2 * SHA256Hash.SHA256_DIGEST_LENGTH)
+            throw new IllegalArgumentException("A SHA256 hex string should have " + 2 * SHA256Hash.SHA256_DIGEST_LENGTH + " characters.");
+
+        return SHA256Hash.fromWords(this.parseHexWord(field, start), this.parseHexWord(field, start + 16),
+                this.parseHexWord(field, start + 32), this.parseHexWord(field, start + 48));
+    }
+
+    private long parseHexWord(int field, int start) {
+        long word = 0;
+        for (int i = start; i < start + 16; i++) {
+            int value = HEX_VALUES[this.byteAt(field, i) & 0xff];
+            if (value < 0)
+                throw new IllegalArgumentException("Invalid character in SHA256 hex string");
+            word = (word << 4) | value;
+        }
+        return word;
+    }
+}
@@ -0,0 +1,35 @@
+package de.hpi.ddm.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.twitter.chill.KryoInstantiator;
+import de.hpi.ddm.actors.MessageKryoRegistrar;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+
+/**
+ * Creates the Kryo instances used by the Akka serializer (see the chill configuration in application.conf).
+ *
+ * The structures and the messages that are sent between the nodes are registered with fixed IDs and hand-written
+ * serializers, so that only a small ID is written instead of their class name, and no field metadata is written.
+ * All nodes run the same code, so they agree on the IDs. Other classes are still serialized with their class name.
+ */
+public class MessageKryoInstantiator extends KryoInstantiator {
+    private static final long serialVersionUID = 1927503454538439676L;
+
+    // IDs up to here are used by Kryo's default registrations, and IDs from 110 on by the MessageKryoRegistrar
+    public static final int FIRST_REGISTRATION_ID = 100;
+
+    @Override
+    public Kryo newKryo() {
+        Kryo kryo = super.newKryo();
+        kryo.setRegistrationRequired(false);
+
+        kryo.register(SHA256Hash.class, new SHA256HashSerializer(), FIRST_REGISTRATION_ID);
+        kryo.register(SHA256Hash[].class, FIRST_REGISTRATION_ID + 1);
+        kryo.register(StudentRecord.class, new StudentRecordSerializer(), FIRST_REGISTRATION_ID + 2);
+        kryo.register(long[].class, FIRST_REGISTRATION_ID + 3);
+
+        new MessageKryoRegistrar().apply(kryo);
+        return kryo;
+    }
+}
@@ -0,0 +1,29 @@
+package de.hpi.ddm.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import de.hpi.ddm.structures.SHA256Hash;
+
+/**
+ * Kryo serializer writing a {@link SHA256Hash} as its 32 raw digest bytes, instead of the field names and
+ * variable-length words written by Kryo's default field serializer.
+ */
+public class SHA256HashSerializer extends Serializer<SHA256Hash> {
+    public SHA256HashSerializer() {
+        // Hashes are immutable, so copies can share the same instance
+        super(false, true);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, SHA256Hash hash) {
+        for (int i = 0; i < 4; i++)
+            output.writeLong(hash.getWord(i));
+    }
+
+    @Override
+    public SHA256Hash read(Kryo kryo, Input input, Class<SHA256Hash> type) {
+        return SHA256Hash.fromWords(input.readLong(), input.readLong(), input.readLong(), input.readLong());
+    }
+}
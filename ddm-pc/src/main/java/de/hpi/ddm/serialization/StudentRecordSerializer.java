@@ -0,0 +1,48 @@
+package de.hpi.ddm.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+
+/**
+ * Kryo serializer writing the fields of a {@link StudentRecord} in a fixed order, with the hashes as raw digest bytes,
+ * so that neither field names nor the classes of the hashes are written.
+ */
+public class StudentRecordSerializer extends Serializer<StudentRecord> {
+    private final SHA256HashSerializer hashSerializer = new SHA256HashSerializer();
+
+    public StudentRecordSerializer() {
+        super(false);
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, StudentRecord record) {
+        output.writeVarInt(record.getId(), true);
+        output.writeString(record.getName());
+        output.writeString(record.getPasswordChars());
+        output.writeVarInt(record.getPasswordLength(), true);
+        this.hashSerializer.write(kryo, output, record.getFullPasswordHash());
+
+        output.writeVarInt(record.getHintHashes().length, true);
+        for (SHA256Hash hintHash : record.getHintHashes())
+            this.hashSerializer.write(kryo, output, hintHash);
+    }
+
+    @Override
+    public StudentRecord read(Kryo kryo, Input input, Class<StudentRecord> type) {
+        int id = input.readVarInt(true);
+        String name = input.readString();
+        String passwordChars = input.readString();
+        int passwordLength = input.readVarInt(true);
+        SHA256Hash fullPasswordHash = this.hashSerializer.read(kryo, input, SHA256Hash.class);
+
+        SHA256Hash[] hintHashes = new SHA256Hash[input.readVarInt(true)];
+        for (int i = 0; i < hintHashes.length; i++)
+            hintHashes[i] = this.hashSerializer.read(kryo, input, SHA256Hash.class);
+
+        return new StudentRecord(id, name, passwordChars, passwordLength, fullPasswordHash, hintHashes);
+    }
+}
@@ -0,0 +1,236 @@
+package de.hpi.ddm.structures;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Open-addressing hash table keyed by SHA256 digests, which are stored as four packed longs in flat arrays
+ * (see {@link SHA256Hash#getWord(int)}), so that no object needs to be allocated to store or to probe a key.
+ *
+ * Each key gets a dense integer ID in insertion order, so callers can associate values to the keys with plain arrays.
+ * The slots only hold the first digest word along with the key ID, so that probing compares a 64-bit prefix first
+ * and only reads the remaining words for the full comparison on a prefix match.
+ *
+ * Since SHA256 digests are uniformly distributed, the first digest word is used directly to pick the home slot.
+ */
+public class DigestTable {
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MIN_CAPACITY = 16;
+
+    // Open-addressing slots (linear probing). A slot is empty if its ID is zero, otherwise the ID is stored plus one
+    private long[] slotPrefixes;
+    private int[] slotIds;
+    private int mask;
+
+    // Full digests of all keys ever added, indexed by their ID
+    private long[] keys;
+    private int idLimit;
+    private int size;
+
+    public DigestTable() {
+        this(MIN_CAPACITY);
+    }
+
+    public DigestTable(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+
+        this.slotPrefixes = new long[capacity];
+        this.slotIds = new int[capacity];
+        this.mask = capacity - 1;
+        this.keys = new long[4 * Math.max(expectedSize, 1)];
+    }
+
+    public static DigestTable of(Collection<SHA256Hash> hashes) {
+        DigestTable table = new DigestTable(hashes.size());
+        for (SHA256Hash hash : hashes)
+            table.add(hash);
+        return table;
+    }
+
+    /**
+     * Creates a table from digests packed as 4 consecutive words each (see {@link #toWords()}).
+     */
+    public static DigestTable ofWords(long[] words) {
+        DigestTable table = new DigestTable(words.length / 4);
+        for (int i = 0; i + 3 < words.length; i += 4)
+            table.add(words[i], words[i+1], words[i+2], words[i+3]);
+        return table;
+    }
+
+    /**
+     * Packs the digests currently in the table as 4 consecutive words each, which is a compact form to send them.
+     */
+    public long[] toWords() {
+        long[] words = new long[4 * this.size];
+        int i = 0;
+        for (int slot = 0; slot < this.slotIds.length; slot++) {
+            if (this.slotIds[slot] != 0) {
+                System.arraycopy(this.keys, 4 * (this.slotIds[slot] - 1), words, i, 4);
+                i += 4;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return The number of keys currently in the table.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return An exclusive upper bound for the IDs of the keys that have been added to the table.
+     */
+    public int idLimit() {
+        return this.idLimit;
+    }
+
+    /**
+     * Adds a digest to the table, if it is not already contained.
+     * @return The ID of the digest.
+     */
+    public int add(long w0, long w1, long w2, long w3) {
+        int slot = this.findSlot(w0, w1, w2, w3);
+        if (this.slotIds[slot] != 0)
+            return this.slotIds[slot] - 1;
+
+        int id = this.idLimit++;
+        if (4 * this.idLimit > this.keys.length)
+            this.keys = Arrays.copyOf(this.keys, 2 * this.keys.length);
+        this.keys[4*id] = w0;
+        this.keys[4*id+1] = w1;
+        this.keys[4*id+2] = w2;
+        this.keys[4*id+3] = w3;
+
+        this.slotPrefixes[slot] = w0;
+        this.slotIds[slot] = id + 1;
+        if (++this.size > this.slotIds.length * LOAD_FACTOR)
+            this.grow();
+
+        return id;
+    }
+
+    public int add(SHA256Hash hash) {
+        return this.add(hash.getWord(0), hash.getWord(1), hash.getWord(2), hash.getWord(3));
+    }
+
+    /**
+     * Looks up the ID of a digest.
+     * @return The ID of the digest, or -1 if it is not in the table.
+     */
+    public int indexOf(long w0, long w1, long w2, long w3) {
+        return this.slotIds[this.findSlot(w0, w1, w2, w3)] - 1;
+    }
+
+    public int indexOf(long[] digest) {
+        return this.indexOf(digest[0], digest[1], digest[2], digest[3]);
+    }
+
+    public int indexOf(SHA256Hash hash) {
+        return this.indexOf(hash.getWord(0), hash.getWord(1), hash.getWord(2), hash.getWord(3));
+    }
+
+    public boolean contains(SHA256Hash hash) {
+        return this.indexOf(hash) >= 0;
+    }
+
+    /**
+     * Cheap pre-check, which only compares the first digest word (i.e. a 64-bit prefix of the digest).
+     * @return False if no digest in the table starts with the given word, true if some digest (probably) does.
+     */
+    public boolean mightContain(long w0) {
+        for (int slot = (int) w0 & this.mask; this.slotIds[slot] != 0; slot = (slot + 1) & this.mask) {
+            if (this.slotPrefixes[slot] == w0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a digest from the table. Its ID is not reused, and its digest can still be retrieved with {@link #getHash(int)}.
+     * @return The ID of the removed digest, or -1 if it was not in the table.
+     */
+    public int remove(long w0, long w1, long w2, long w3) {
+        int slot = this.findSlot(w0, w1, w2, w3);
+        int id = this.slotIds[slot] - 1;
+        if (id < 0)
+            return -1;
+
+        // Backward shift deletion: move later entries of the probe sequence into the gap, so no tombstones are needed
+        int gap = slot;
+        for (int next = (gap + 1) & this.mask; this.slotIds[next] != 0; next = (next + 1) & this.mask) {
+            int home = (int) this.slotPrefixes[next] & this.mask;
+            if (((next - home) & this.mask) >= ((next - gap) & this.mask)) {
+                this.slotPrefixes[gap] = this.slotPrefixes[next];
+                this.slotIds[gap] = this.slotIds[next];
+                gap = next;
+            }
+        }
+        this.slotIds[gap] = 0;
+        this.size--;
+
+        return id;
+    }
+
+    public int remove(SHA256Hash hash) {
+        return this.remove(hash.getWord(0), hash.getWord(1), hash.getWord(2), hash.getWord(3));
+    }
+
+    /**
+     * Gets the given word of the digest with the given ID.
+     */
+    public long getWord(int id, int word) {
+        return this.keys[4*id + word];
+    }
+
+    /**
+     * Gets the digest with the given ID as a hash object.
+     */
+    public SHA256Hash getHash(int id) {
+        return SHA256Hash.fromWords(this.keys[4*id], this.keys[4*id+1], this.keys[4*id+2], this.keys[4*id+3]);
+    }
+
+    /**
+     * Finds the slot containing the given digest or, if the digest is not in the table, the empty slot where it would go.
+     */
+    private int findSlot(long w0, long w1, long w2, long w3) {
+        int slot = (int) w0 & this.mask;
+        int id;
+        while ((id = this.slotIds[slot]) != 0) {
+            if (this.slotPrefixes[slot] == w0) {
+                int k = 4 * (id - 1);
+                if (this.keys[k+1] == w1 && this.keys[k+2] == w2 && this.keys[k+3] == w3)
+                    return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldPrefixes = this.slotPrefixes;
+        int[] oldIds = this.slotIds;
+
+        this.slotPrefixes = new long[2 * oldPrefixes.length];
+        this.slotIds = new int[2 * oldIds.length];
+        this.mask = this.slotIds.length - 1;
+
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == 0)
+                continue;
+
+            int slot = (int) oldPrefixes[i] & this.mask;
+            while (this.slotIds[slot] != 0)
+                slot = (slot + 1) & this.mask;
+            this.slotPrefixes[slot] = oldPrefixes[i];
+            this.slotIds[slot] = oldIds[i];
+        }
+    }
+}
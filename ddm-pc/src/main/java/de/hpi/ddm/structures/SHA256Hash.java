@@ -1,16 +1,26 @@
 package de.hpi.ddm.structures;
 
+import com.esotericsoftware.kryo.DefaultSerializer;
+import de.hpi.ddm.serialization.SHA256HashSerializer;
+
 import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 
 /**
- * SHA256 HASH CLASS (with hex <-> byte array conversion, hash / comparison operators for later use).
+ * SHA256 HASH CLASS (with hex <-> digest conversion, hash / comparison operators for later use).
+ *
+ * The digest is stored as 4 big-endian packed words (see {@link #getWord(int)}), so that an instance is a single
+ * small object, and comparing or hashing it only takes a few word operations.
  */
-public class SHA256Hash {
-    private static final int SHA256_DIGEST_LENGTH = 32;
-    private byte[] bytes = new byte[SHA256_DIGEST_LENGTH];
+@DefaultSerializer(SHA256HashSerializer.class)
+public final class SHA256Hash {
+    public static final int SHA256_DIGEST_LENGTH = 32;
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
 
     private static ThreadLocal<MessageDigest> sha256Hasher = ThreadLocal.withInitial(() -> {
         try {
@@ -20,6 +30,14 @@ public class SHA256Hash {
         }
     });
 
+    private static ThreadLocal<byte[]> digestBuffer = ThreadLocal.withInitial(() -> new byte[SHA256_DIGEST_LENGTH]);
+
+    private SHA256Hash(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
 
     @Override
     public boolean equals(Object other) {
@@ -28,67 +46,106 @@ public class SHA256Hash {
         if (other == null || getClass() != other.getClass())
             return false;
         SHA256Hash that = (SHA256Hash) other;
-        return Arrays.equals(bytes, that.bytes);
+        return w0 == that.w0 && w1 == that.w1 && w2 == that.w2 && w3 == that.w3;
     }
 
     @Override
     public int hashCode() {
-        // Just join the first 4 bytes of the SHA256 hash to build the hash for Java's hash
-        return (bytes[0] << 24) | (bytes[1] << 16) | (bytes[2] << 8) | bytes[3];
+        // The digest is uniformly distributed already, but mixing all words keeps crafted (e.g. dummy) hashes apart too
+        long h = w0;
+        h = h * 31 + w1;
+        h = h * 31 + w2;
+        h = h * 31 + w3;
+        return (int) (h ^ (h >>> 32));
     }
 
     public static SHA256Hash fromHexString(String hexString) {
-        SHA256Hash hash = new SHA256Hash();
-
         if (hexString.length() != 2*SHA256_DIGEST_LENGTH)
             throw new IllegalArgumentException("A SHA256 hex string should have " + 2*SHA256_DIGEST_LENGTH + " characters.");
 
-        for (int i = 0; i < SHA256_DIGEST_LENGTH; i++) {
-            byte hiNibble =  hexCharToNibble(hexString.charAt(i*2));
-            byte loNibble =  hexCharToNibble(hexString.charAt(i*2+1));
-
-            hash.bytes[i] = (byte)((hiNibble << 4) | loNibble);
-        }
-
-        return hash;
+        return new SHA256Hash(parseHexWord(hexString, 0), parseHexWord(hexString, 16),
+                parseHexWord(hexString, 32), parseHexWord(hexString, 48));
     }
 
     public static SHA256Hash fromDataHash(byte[] data, int length) {
-        SHA256Hash hash = new SHA256Hash();
+        byte[] digestBytes = digestBuffer.get();
 
         MessageDigest digest = sha256Hasher.get();
         digest.update(data, 0, length);
         try {
-            digest.digest(hash.bytes, 0, SHA256_DIGEST_LENGTH);
+            digest.digest(digestBytes, 0, SHA256_DIGEST_LENGTH);
         } catch (DigestException e) {
             throw new IllegalStateException("SHA256 algorithm failed.");
         }
 
-        return hash;
+        return fromBytes(digestBytes, 0);
+    }
+
+    /**
+     * Builds a hash from the 32 digest bytes starting at the given offset.
+     */
+    public static SHA256Hash fromBytes(byte[] bytes, int offset) {
+        return new SHA256Hash(readWord(bytes, offset), readWord(bytes, offset + 8),
+                readWord(bytes, offset + 16), readWord(bytes, offset + 24));
+    }
+
+    /**
+     * Builds a hash from its digest, given as 4 big-endian packed words (see {@link #getWord(int)}).
+     */
+    public static SHA256Hash fromWords(long w0, long w1, long w2, long w3) {
+        return new SHA256Hash(w0, w1, w2, w3);
+    }
+
+    /**
+     * Gets the given 64-bit word of the digest, where word 0 contains the first 8 bytes in big-endian order.
+     */
+    public long getWord(int index) {
+        switch (index) {
+            case 0: return w0;
+            case 1: return w1;
+            case 2: return w2;
+            case 3: return w3;
+            default: throw new IndexOutOfBoundsException("A SHA256 digest only has 4 words.");
+        }
     }
 
     @Override
     public String toString() {
         StringBuilder hexStringBuilder = new StringBuilder(2*SHA256_DIGEST_LENGTH);
-        for (int i = 0; i < SHA256_DIGEST_LENGTH; i++) {
-            hexStringBuilder.append(nibbleToHexChar((byte)(bytes[i] >> 4)));
-            hexStringBuilder.append(nibbleToHexChar((byte)(bytes[i] & 0xf)));
+        for (int i = 0; i < 4; i++) {
+            long word = getWord(i);
+            for (int shift = 60; shift >= 0; shift -= 4)
+                hexStringBuilder.append(nibbleToHexChar((int)(word >>> shift) & 0xf));
         }
 
         return hexStringBuilder.toString();
     }
 
-    private static byte hexCharToNibble(char c) {
+    private static long parseHexWord(String hexString, int offset) {
+        long word = 0;
+        for (int i = offset; i < offset + 16; i++)
+            word = (word << 4) | hexCharToNibble(hexString.charAt(i));
+        return word;
+    }
+
+    private static long readWord(byte[] bytes, int offset) {
+        long word = 0;
+        for (int i = offset; i < offset + 8; i++)
+            word = (word << 8) | (bytes[i] & 0xff);
+        return word;
+    }
+
+    private static int hexCharToNibble(char c) {
         if (c >= '0' && c <= '9')
-            return (byte)(c - '0');
+            return c - '0';
         if (c >= 'a' && c <= 'f')
-            return (byte)((c - 'a') + 10);
+            return (c - 'a') + 10;
         if (c >= 'A' && c <= 'F')
-            return (byte)((c - 'A') + 10);
+            return (c - 'A') + 10;
         throw new IllegalArgumentException("Invalid character in SHA256 hex string");
     }
 
-    private static char nibbleToHexChar(byte nibble) {
+    private static char nibbleToHexChar(int nibble) {
         return (nibble < 10) ? (char)('0' + nibble) : (char)('a' + (nibble - 10));
     }
 }
@@ -0,0 +1,63 @@
+package de.hpi.ddm.actors;
+
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class HintSetRegistryTest {
+    private static final SHA256Hash H1 = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5");
+    private static final SHA256Hash H2 = SHA256Hash.fromHexString("dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc");
+    private static final SHA256Hash H3 = SHA256Hash.fromHexString("c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0");
+
+    @Test
+    public void markCracked_whenSomeHintsAreCracked_itShouldOnlyKeepTheRemainingOnes() {
+        // Arrange
+        HintSetRegistry.HintSet hintSet = new HintSetRegistry.HintSet(DigestTable.of(Arrays.asList(H1, H2, H3)));
+        DigestTable before = hintSet.getRemainingHintHashes();
+
+        // Act
+        hintSet.markCracked(DigestTable.of(Arrays.asList(H1, H3)).toWords());
+
+        // Assert
+        DigestTable remaining = hintSet.getRemainingHintHashes();
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.contains(H2));
+        assertEquals(3, before.size());
+        assertFalse(hintSet.getExhaustedToken().isCancelled());
+    }
+
+    @Test
+    public void markCracked_whenTheHintsAreCrackedInParts_itShouldOnlyBeExhaustedAfterTheLastOne() {
+        // Arrange
+        HintSetRegistry.HintSet hintSet = new HintSetRegistry.HintSet(DigestTable.of(Arrays.asList(H1, H2, H3)));
+
+        // Act & Assert
+        hintSet.markCracked(DigestTable.of(Collections.singletonList(H1)).toWords());
+        assertFalse(hintSet.getExhaustedToken().isCancelled());
+
+        hintSet.markCracked(DigestTable.of(Arrays.asList(H1, H2)).toWords());
+        assertFalse(hintSet.getExhaustedToken().isCancelled());
+
+        hintSet.markCracked(DigestTable.of(Collections.singletonList(H3)).toWords());
+        assertTrue(hintSet.getExhaustedToken().isCancelled());
+        assertTrue(hintSet.getRemainingHintHashes().isEmpty());
+    }
+
+    @Test
+    public void markCracked_whenTheHashesAreNotInTheSet_itShouldIgnoreThem() {
+        // Arrange
+        HintSetRegistry.HintSet hintSet = new HintSetRegistry.HintSet(DigestTable.of(Collections.singletonList(H1)));
+
+        // Act
+        hintSet.markCracked(DigestTable.of(Arrays.asList(H2, H3)).toWords());
+
+        // Assert
+        assertEquals(1, hintSet.getRemainingHintHashes().size());
+        assertFalse(hintSet.getExhaustedToken().isCancelled());
+    }
+}
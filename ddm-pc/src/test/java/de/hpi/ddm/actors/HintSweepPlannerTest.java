@@ -0,0 +1,93 @@
+package de.hpi.ddm.actors;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HintSweepPlannerTest {
+    @Test
+    public void choosePrefixLength_whenThereAreFewRegistrants_itShouldUseOneCharacter() {
+        // Act
+        int prefixLength = HintSweepPlanner.choosePrefixLength(11, 4, 0);
+
+        // Assert
+        assertEquals(1, prefixLength);
+    }
+
+    @Test
+    public void choosePrefixLength_whenTheHashRateIsUnknown_itShouldGiveEachRegistrantTwoWorkItems() {
+        // Act
+        int prefixLength = HintSweepPlanner.choosePrefixLength(11, 200, 0);
+
+        // Assert
+        // 11 * 10 = 110 prefixes are too few for 400 work items, 11 * 10 * 9 = 990 are enough
+        assertEquals(3, prefixLength);
+    }
+
+    @Test
+    public void choosePrefixLength_whenTheWorkItemsWouldBeTooShort_itShouldStopEarly() {
+        // Act
+        int prefixLength = HintSweepPlanner.choosePrefixLength(11, 200, 1e6);
+
+        // Assert
+        // A work item of prefix length 3 hashes 8! = 40320 permutations, which take 0.04 seconds at this rate
+        assertEquals(2, prefixLength);
+    }
+
+    @Test
+    public void choosePrefixLength_whenThereAreManyRegistrants_itShouldLeaveOneChoice() {
+        // Act
+        int prefixLength = HintSweepPlanner.choosePrefixLength(3, 200, 0);
+
+        // Assert
+        assertEquals(2, prefixLength);
+    }
+
+    @Test
+    public void getHintSet_whenSomeHintsHaveBeenCracked_itShouldOnlySendTheRemainingOnes() {
+        ActorSystem system = ActorSystem.create("test", ConfigFactory.parseString("akka.actor.provider = local\nakka.extensions = []").withFallback(ConfigFactory.load()));
+        try {
+            // Arrange
+            SHA256Hash h1 = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5"); // ABCDEF
+            SHA256Hash h2 = SHA256Hash.fromHexString("dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc"); // ACDEGB
+            SHA256Hash h3 = SHA256Hash.fromHexString("c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0"); // DEFCGA
+
+            TestKit workerPool = new TestKit(system);
+            TestKit batchProcessor = new TestKit(system);
+            TestKit worker = new TestKit(system);
+            ActorRef planner = system.actorOf(HintSweepPlanner.props(workerPool.getRef()));
+
+            planner.tell(new HintSweepPlanner.CrackHintsMessage("ABCDEFG", new HashSet<>(Arrays.asList(h1, h2, h3)), 1, 1, 0), batchProcessor.getRef());
+            Worker.CrackHintsBatchWorkItem workItem = workerPool.expectMsgClass(Worker.CrackHintsBatchWorkItem.class);
+
+            Map<SHA256Hash, Character> crackedHints = new HashMap<>();
+            crackedHints.put(h1, 'G');
+            crackedHints.put(h2, 'F');
+            planner.tell(new Worker.CrackedHintsMessage(workItem.getSweepId(), workItem.getPrefix(), crackedHints), worker.getRef());
+            batchProcessor.expectMsgClass(HintSweepPlanner.HintsCrackedMessage.class);
+
+            // Act
+            planner.tell(new HintSweepPlanner.GetHintSetMessage(workItem.getSweepId()), worker.getRef());
+
+            // Assert
+            HintSweepPlanner.HintSetMessage hintSet = worker.expectMsgClass(HintSweepPlanner.HintSetMessage.class);
+            DigestTable remaining = DigestTable.ofWords(hintSet.getHintHashWords());
+            assertEquals(1, remaining.size());
+            assertTrue(remaining.contains(h3));
+        } finally {
+            TestKit.shutdownActorSystem(system);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package de.hpi.ddm.actors;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.twitter.chill.KryoInstantiator;
+import de.hpi.ddm.serialization.MessageKryoInstantiator;
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serialization of the messages that are sent between the nodes with the default Kryo configuration
+ * (class names and field by field serialization) and the registered one (see MessageKryoInstantiator).
+ * The serialized size of each message is printed before the benchmarks run, and the scores are in microseconds per message.
+ *
+ * It is part of the actors package, since the messages are only visible there.
+ * To run it, use: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=de.hpi.ddm.actors.MessageSerializationBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerializationBenchmark {
+    private static final int RECORDS = 100;
+    private static final int HINTS = 9;
+
+    @Param({ "default", "registered" })
+    public String configuration;
+
+    @Param({ "BatchMessage", "CrackHintsBatchWorkItem", "CrackedHintsMessage", "CrackFullPasswordWorkItem", "HintSetMessage" })
+    public String messageType;
+
+    private Kryo kryo;
+    private Object message;
+    private final Output output = new Output(1 << 16, -1);
+    private final Input input = new Input();
+    private byte[] serialized;
+
+    private static SHA256Hash hash(String text) {
+        byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+        return SHA256Hash.fromDataHash(data, data.length);
+    }
+
+    private static Kryo createKryo(String configuration) {
+        return configuration.equals("registered") ? new MessageKryoInstantiator().newKryo() : new KryoInstantiator().newKryo();
+    }
+
+    private static Object createMessage(String messageType) {
+        switch (messageType) {
+            case "BatchMessage":
+                List<StudentRecord> records = new ArrayList<>();
+                for (int i = 0; i < RECORDS; i++) {
+                    SHA256Hash[] hintHashes = new SHA256Hash[HINTS];
+                    for (int j = 0; j < HINTS; j++)
+                        hintHashes[j] = hash("hint" + i + "_" + j);
+                    records.add(new StudentRecord(i, "Name" + i, "ABCDEFGHIJK", 10, hash("password" + i), hintHashes));
+                }
+                return new Master.BatchMessage(records);
+            case "CrackHintsBatchWorkItem":
+                return new Worker.CrackHintsBatchWorkItem(7, "AB", "CDEFGHIJK");
+            case "CrackedHintsMessage":
+                Map<SHA256Hash, Character> crackedHints = new HashMap<>();
+                for (int i = 0; i < 20; i++)
+                    crackedHints.put(hash("hint" + i), (char) ('A' + i % 11));
+                return new Worker.CrackedHintsMessage(7, "AB", crackedHints);
+            case "CrackFullPasswordWorkItem":
+                List<SHA256Hash> fullPasswordHashes = new ArrayList<>();
+                for (int i = 0; i < 4; i++)
+                    fullPasswordHashes.add(hash("password" + i));
+                return new Worker.CrackFullPasswordWorkItem(3, 1, DigestTable.of(fullPasswordHashes).toWords(), "ABCDEF", 10, 1L << 20, 1L << 21);
+            case "HintSetMessage":
+                List<SHA256Hash> hintHashes = new ArrayList<>();
+                for (int i = 0; i < RECORDS * HINTS; i++)
+                    hintHashes.add(hash("hint" + i));
+                return new HintSweepPlanner.HintSetMessage(7, DigestTable.of(hintHashes).toWords());
+            default:
+                throw new IllegalArgumentException("Unknown message type: " + messageType);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        this.kryo = createKryo(this.configuration);
+        this.message = createMessage(this.messageType);
+        this.serialized = this.serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        this.output.clear();
+        this.kryo.writeClassAndObject(this.output, this.message);
+        return this.output.toBytes();
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        this.input.setBuffer(this.serialized);
+        return this.kryo.readClassAndObject(this.input);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String[] messageTypes = { "BatchMessage", "CrackHintsBatchWorkItem", "CrackedHintsMessage", "CrackFullPasswordWorkItem", "HintSetMessage" };
+        System.out.printf("%-28s %10s %12s%n", "Message", "default", "registered");
+        for (String messageType : messageTypes) {
+            MessageSerializationBenchmark benchmark = new MessageSerializationBenchmark();
+            benchmark.messageType = messageType;
+            benchmark.configuration = "default";
+            benchmark.setup();
+            int defaultSize = benchmark.serialized.length;
+            benchmark.configuration = "registered";
+            benchmark.setup();
+            System.out.printf("%-28s %8d B %10d B%n", messageType, defaultSize, benchmark.serialized.length);
+        }
+
+        new Runner(new OptionsBuilder().include(MessageSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,11 +1,17 @@
 package de.hpi.ddm.algorithms;
 
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 import org.junit.Test;
 
 import java.security.DigestException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class CombinationCrackerTest {
 
@@ -35,6 +41,84 @@ public class CombinationCrackerTest {
         assertEquals("AbBaCd", plainText);
     }
 
+    @Test
+    public void crack_whenTheKeyspaceIsSplitAmongMultipleThreads_itShouldSuccessfullyCrackIt() throws DigestException {
+        // Arrange
+        ForkJoinPool pool = new ForkJoinPool(4);
+        CombinationCracker cracker = new CombinationCracker("AB", 16, pool);
+        SHA256Hash targetHash = SHA256Hash.fromHexString("417dbf9276d5432b9dd899f8bbef140960b4ebe522dc2498f52e34a095d95685");
+
+        // Act
+        String plainText = cracker.crack(targetHash);
+        pool.shutdown();
+
+        // Assert
+        assertEquals("BBBBBBBBBBBBBBBA", plainText);
+    }
+
+    @Test
+    public void crack_whenGivenARangeOfCombinations_itShouldOnlyFindThePasswordInTheRangeContainingIt() throws DigestException {
+        // Arrange
+        CombinationCracker cracker = new CombinationCracker("AB", 8);
+        SHA256Hash targetHash = SHA256Hash.fromHexString("06e39dc6170e54239d73836b0574a2482720539f91ed8ca308b9e3a1a51225d2");
+        long passwordIndex = 0b10101010; // ABABABAB, least significant digit first
+
+        // Act
+        String plainTextBefore = cracker.crack(targetHash, 0, passwordIndex);
+        String plainTextInRange = cracker.crack(targetHash, passwordIndex, passwordIndex + 1);
+        String plainTextAfter = cracker.crack(targetHash, passwordIndex + 1, cracker.getNumCombinations());
+
+        // Assert
+        assertNull(plainTextBefore);
+        assertEquals("ABABABAB", plainTextInRange);
+        assertNull(plainTextAfter);
+    }
+
+    @Test
+    public void crack_whenTheTokenIsCancelled_itShouldStopWithoutAResult() throws DigestException {
+        // Arrange
+        CombinationCracker cracker = new CombinationCracker("AB", 8);
+        SHA256Hash targetHash = SHA256Hash.fromHexString("06e39dc6170e54239d73836b0574a2482720539f91ed8ca308b9e3a1a51225d2");
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+
+        // Act
+        String plainText = cracker.crack(targetHash, 0, cracker.getNumCombinations(), cancellationToken);
+
+        // Assert
+        assertNull(plainText);
+    }
+
+    @Test
+    public void crack_whenGivenMultipleTargetHashes_itShouldCrackAllOfThemInOnePass() throws DigestException {
+        // Arrange
+        CombinationCracker cracker = new CombinationCracker("AB", 8);
+        SHA256Hash h1 = SHA256Hash.fromHexString("06e39dc6170e54239d73836b0574a2482720539f91ed8ca308b9e3a1a51225d2"); // ABABABAB
+        SHA256Hash h2 = SHA256Hash.fromHexString("4c31c40cb7481f6572b01dc7e28fee48f21dcc86167272d56943314d4c90afba"); // ABBBAAAB
+        SHA256Hash h3 = SHA256Hash.fromHexString("0123456789012345678901234567890123456789012345678901234567890123"); // (Dummy non-matching)
+        DigestTable targetHashes = DigestTable.of(Arrays.asList(h1, h2, h3));
+
+        // Act
+        Map<SHA256Hash, String> plainTexts = cracker.crack(targetHashes, 0, cracker.getNumCombinations(), new CancellationToken());
+
+        // Assert
+        assertEquals(2, plainTexts.size());
+        assertEquals("ABABABAB", plainTexts.get(h1));
+        assertEquals("ABBBAAAB", plainTexts.get(h2));
+    }
+
+    @Test
+    public void measureHashesPerSecond_whenGivenMoreCombinationsThanThereAre_itShouldMeasureAPositiveRate() {
+        // Arrange
+        CombinationCracker cracker = new CombinationCracker("AB", 8);
+
+        // Act
+        double hashesPerSecond = cracker.measureHashesPerSecond(1 << 20);
+
+        // Assert
+        assertTrue(hashesPerSecond > 0);
+    }
+
     @Test(expected = RuntimeException.class)
     public void crack_whenNoCombinationMatchesTheGivenHash_itShouldThrowAnException() throws DigestException {
         // Arrange
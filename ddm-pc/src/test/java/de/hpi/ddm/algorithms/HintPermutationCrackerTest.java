@@ -1,9 +1,11 @@
 package de.hpi.ddm.algorithms;
 
+import de.hpi.ddm.structures.DigestTable;
 import de.hpi.ddm.structures.SHA256Hash;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -65,4 +67,62 @@ public class HintPermutationCrackerTest {
         assertTrue(crackedHints.containsKey(h1));
         assertEquals('E', (char)crackedHints.get(h1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void crack_whenThePermutationsAreSplitIntoSubPrefixes_itShouldCrackHintsInAllOfThem() {
+        // Arrange
+        SHA256Hash h1 = SHA256Hash.fromHexString("6496c8afd8aca513d57401a4dd1db1abba72c4ca26244d48b8984d5f83723110"); // IHGFEDCB
+        SHA256Hash h2 = SHA256Hash.fromHexString("9ac2197d9258257b1ae8463e4214e4cd0a578bc1517f2415928b91be4283fc48"); // ABCDEFGH
+        SHA256Hash h3 = SHA256Hash.fromHexString("8537e501d31bd3b0a75283a4f8fabeced57c61d38d383af86d4264702ba84ce8"); // EAIBHCGD
+        Set<SHA256Hash> hintHashes = new HashSet<>(Arrays.asList(h1, h2, h3));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        HintPermutationCracker cracker = new HintPermutationCracker("ABCDEFGHI", null, pool);
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = cracker.crack(hintHashes);
+        pool.shutdown();
+
+        // Assert
+        assertEquals(3, crackedHints.size());
+        assertEquals('A', (char)crackedHints.get(h1));
+        assertEquals('I', (char)crackedHints.get(h2));
+        assertEquals('F', (char)crackedHints.get(h3));
+    }
+
+    @Test
+    public void crack_whenThereIsASingleChoice_itShouldTryTheOnlyPermutation() {
+        // Arrange
+        SHA256Hash h1 = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5"); // ABCDEF
+        Set<SHA256Hash> hintHashes = new HashSet<>(Collections.singletonList(h1));
+
+        HintPermutationCracker cracker = new HintPermutationCracker("G", "ABCDEF");
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = cracker.crack(hintHashes);
+
+        // Assert
+        assertEquals(1, crackedHints.size());
+        assertEquals('G', (char)crackedHints.get(h1));
+    }
+
+    @Test
+    public void crack_whenAParentTokenIsCancelled_itShouldStopWithoutCrackingAnything() {
+        // Arrange
+        SHA256Hash h1 = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5"); // ABCDEF
+        DigestTable hintHashes = DigestTable.of(Collections.singletonList(h1));
+
+        CancellationToken exhausted = new CancellationToken();
+        exhausted.cancel();
+        CancellationToken token = new CancellationToken(new CancellationToken(), exhausted);
+
+        HintPermutationCracker cracker = new HintPermutationCracker("ABCDEFG", null);
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = cracker.crack(hintHashes, token);
+
+        // Assert
+        assertTrue(token.isCancelled());
+        assertTrue(crackedHints.isEmpty());
+    }
+}
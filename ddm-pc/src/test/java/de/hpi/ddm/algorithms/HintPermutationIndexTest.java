@@ -0,0 +1,74 @@
+package de.hpi.ddm.algorithms;
+
+import de.hpi.ddm.structures.DigestTable;
+import de.hpi.ddm.structures.SHA256Hash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class HintPermutationIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void crack_whenLookingUpMultipleHintHashes_itShouldCrackTheMatchingOnes() throws IOException {
+        // Arrange
+        SHA256Hash h1 = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5"); // ABCDEF
+        SHA256Hash h2 = SHA256Hash.fromHexString("dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc"); // ACDEGB
+        SHA256Hash h3 = SHA256Hash.fromHexString("c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0"); // DEFCGA
+        SHA256Hash h4 = SHA256Hash.fromHexString("0123456789012345678901234567890123456789012345678901234567890123"); // (Dummy non-matching)
+        DigestTable hintHashes = DigestTable.of(Arrays.asList(h1, h2, h3, h4));
+
+        Path file = folder.getRoot().toPath().resolve(HintPermutationIndex.getFileName("GFEDCBA"));
+        HintPermutationIndex.build(file, "GFEDCBA");
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = HintPermutationIndex.open(file).crack(hintHashes, null);
+
+        // Assert
+        assertEquals(3, crackedHints.size());
+        assertEquals('G', (char)crackedHints.get(h1));
+        assertEquals('F', (char)crackedHints.get(h2));
+        assertEquals('B', (char)crackedHints.get(h3));
+    }
+
+    @Test
+    public void crack_whenGivenAPrefix_itShouldOnlyCrackTheHintsStartingWithIt() throws IOException {
+        // Arrange
+        SHA256Hash h1 = SHA256Hash.fromHexString("6496c8afd8aca513d57401a4dd1db1abba72c4ca26244d48b8984d5f83723110"); // IHGFEDCB
+        SHA256Hash h2 = SHA256Hash.fromHexString("9ac2197d9258257b1ae8463e4214e4cd0a578bc1517f2415928b91be4283fc48"); // ABCDEFGH
+        SHA256Hash h3 = SHA256Hash.fromHexString("8537e501d31bd3b0a75283a4f8fabeced57c61d38d383af86d4264702ba84ce8"); // EAIBHCGD
+        DigestTable hintHashes = DigestTable.of(Arrays.asList(h1, h2, h3));
+
+        HintPermutationIndex index = HintPermutationIndex.getOrBuild(folder.getRoot().toPath(), "ABCDEFGHI");
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = index.crack(hintHashes, "EA");
+
+        // Assert
+        assertEquals(1, crackedHints.size());
+        assertEquals('F', (char)crackedHints.get(h3));
+        assertEquals("ABCDEFGHI", index.getCharset());
+    }
+
+    @Test
+    public void crack_whenThePrefixRepeatsAChoice_itShouldCrackNothing() throws IOException {
+        // Arrange
+        SHA256Hash h2 = SHA256Hash.fromHexString("9ac2197d9258257b1ae8463e4214e4cd0a578bc1517f2415928b91be4283fc48"); // ABCDEFGH
+        DigestTable hintHashes = DigestTable.of(Arrays.asList(h2));
+
+        HintPermutationIndex index = HintPermutationIndex.getOrBuild(folder.getRoot().toPath(), "ABCDEFGHI");
+
+        // Act
+        Map<SHA256Hash, Character> crackedHints = index.crack(hintHashes, "AA");
+
+        // Assert
+        assertEquals(0, crackedHints.size());
+    }
+}
@@ -0,0 +1,108 @@
+package de.hpi.ddm.benchmarks;
+
+import com.opencsv.CSVReader;
+import de.hpi.ddm.configuration.DatasetDescriptor;
+import de.hpi.ddm.io.BinaryStudentDataset;
+import de.hpi.ddm.io.StudentRecordScanner;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a generated dataset with the CSV reader (parsing the values of each line like the Reader did before),
+ * with the memory-mapped StudentRecordScanner and from its binary copy (see BinaryStudentDataset), which is converted
+ * once before the benchmarks. The scores are in milliseconds per pass over the whole dataset.
+ *
+ * To run it, use: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=de.hpi.ddm.benchmarks.DatasetScanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatasetScanBenchmark {
+    private static final int RECORDS = 100000;
+    private static final int HINTS = 9;
+
+    private Path directory;
+    private DatasetDescriptor descriptor;
+    private Path binaryFile;
+    private BinaryStudentDataset binaryDataset;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("ddm-dataset");
+        this.descriptor = new DatasetDescriptor();
+        this.descriptor.setDatasetPath(this.directory.toString() + File.separator);
+        this.descriptor.setDatasetName("students");
+        this.descriptor.setDatasetEnding(".csv");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(this.descriptor.getDatasetFile(), StandardCharsets.UTF_8)) {
+            writer.write("ID;Name;PasswordChars;PasswordLength;Password;Hint1;Hint2;Hint3;Hint4;Hint5;Hint6;Hint7;Hint8;Hint9\n");
+            for (int i = 0; i < RECORDS; i++) {
+                writer.write(i + ";Name" + i + ";ABCDEFGHIJK;10");
+                for (int j = 0; j <= HINTS; j++) {
+                    byte[] data = ("record" + i + "_" + j).getBytes(StandardCharsets.US_ASCII);
+                    writer.write(";" + SHA256Hash.fromDataHash(data, data.length));
+                }
+                writer.write("\n");
+            }
+        }
+
+        this.binaryFile = this.directory.resolve(BinaryStudentDataset.getFileName(this.descriptor));
+        BinaryStudentDataset.convert(this.descriptor, this.binaryFile);
+        this.binaryDataset = BinaryStudentDataset.open(this.binaryFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(this.descriptor.getDatasetFile());
+        Files.delete(this.binaryFile);
+        Files.delete(this.directory);
+    }
+
+    @Benchmark
+    public void csvReader(Blackhole blackhole) throws IOException {
+        try (CSVReader reader = this.descriptor.createCSVReader()) {
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                blackhole.consume(new StudentRecord(Integer.parseInt(line[0]), line[1], line[2], Integer.parseInt(line[3]),
+                        SHA256Hash.fromHexString(line[4]),
+                        Arrays.stream(line, 5, line.length).map(SHA256Hash::fromHexString).toArray(SHA256Hash[]::new)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) throws IOException {
+        try (StudentRecordScanner scanner = this.descriptor.createStudentRecordScanner()) {
+            StudentRecord record;
+            while ((record = scanner.next()) != null)
+                blackhole.consume(record);
+        }
+    }
+
+    @Benchmark
+    public void binaryDataset(Blackhole blackhole) {
+        for (int i = 0; i < this.binaryDataset.size(); i++)
+            blackhole.consume(this.binaryDataset.get(i));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DatasetScanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,68 @@
+package de.hpi.ddm.benchmarks;
+
+import de.hpi.ddm.hashing.SHA256Engine;
+import de.hpi.ddm.structures.SHA256Hash;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the different ways to hash the password candidates generated by the crackers:
+ * the MessageDigest based SHA256Hash.fromDataHash, and the single message and batched SHA256Engine.
+ * Each operation hashes a buffer of 10-character candidates, so the scores are in candidates per microsecond.
+ *
+ * To run it, use: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=de.hpi.ddm.benchmarks.SHA256Benchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SHA256Benchmark {
+    private static final int CANDIDATES = 256;
+    private static final int LENGTH = 10;
+
+    private final byte[] candidates = new byte[CANDIDATES * LENGTH];
+    private final long[] digests = new long[CANDIDATES * SHA256Engine.DIGEST_LONGS];
+    private final SHA256Engine engine = new SHA256Engine();
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < this.candidates.length; i++)
+            this.candidates[i] = (byte) ('A' + (i * 7) % 11);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public void messageDigest(Blackhole blackhole) {
+        byte[] candidate = new byte[LENGTH];
+        for (int i = 0; i < CANDIDATES; i++) {
+            System.arraycopy(this.candidates, i * LENGTH, candidate, 0, LENGTH);
+            blackhole.consume(SHA256Hash.fromDataHash(candidate, LENGTH));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public long[] engineSingle() {
+        for (int i = 0; i < CANDIDATES; i++)
+            this.engine.hash(this.candidates, i * LENGTH, LENGTH, this.digests);
+        return this.digests;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public long[] engineBatch() {
+        this.engine.hashBatch(this.candidates, LENGTH, LENGTH, CANDIDATES, this.digests);
+        return this.digests;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SHA256Benchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,78 @@
+package de.hpi.ddm.hashing;
+
+import de.hpi.ddm.structures.SHA256Hash;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SHA256EngineTest {
+
+    @Test
+    public void hash_whenHashingMessagesOfAllSupportedLengths_itShouldMatchTheReferenceImplementation() {
+        // Arrange
+        SHA256Engine engine = new SHA256Engine();
+        long[] digest = new long[SHA256Engine.DIGEST_LONGS];
+        byte[] data = new byte[SHA256Engine.MAX_MESSAGE_LENGTH + 3];
+        new Random(42).nextBytes(data);
+
+        for (int length = 0; length <= SHA256Engine.MAX_MESSAGE_LENGTH; length++) {
+            SHA256Hash expected = SHA256Hash.fromDataHash(Arrays.copyOfRange(data, 3, 3 + length), length);
+
+            // Act
+            engine.hash(data, 3, length, digest);
+
+            // Assert
+            assertEquals(expected, SHA256Hash.fromWords(digest[0], digest[1], digest[2], digest[3]));
+        }
+    }
+
+    @Test
+    public void hash_whenHashingIntoIntState_itShouldWriteTheBigEndianDigestWords() {
+        // Arrange
+        SHA256Engine engine = new SHA256Engine();
+        int[] digest = new int[SHA256Engine.DIGEST_INTS];
+        byte[] data = "ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+        // Act
+        engine.hash(data, 0, data.length, digest);
+
+        // Assert
+        SHA256Hash expected = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5");
+        for (int i = 0; i < SHA256Engine.DIGEST_LONGS; i++)
+            assertEquals(expected.getWord(i), SHA256Engine.packWords(digest[2*i], digest[2*i+1]));
+    }
+
+    @Test
+    public void hashBatch_whenHashingABatchThatDoesNotFillAllLanes_itShouldMatchTheSingleMessageDigests() {
+        // Arrange
+        SHA256Engine engine = new SHA256Engine();
+        int stride = 11, length = 10, count = 4 * SHA256Engine.LANES + 1;
+        byte[] data = new byte[count * stride];
+        new Random(42).nextBytes(data);
+        long[] digests = new long[count * SHA256Engine.DIGEST_LONGS];
+        long[] expected = new long[SHA256Engine.DIGEST_LONGS];
+
+        // Act
+        engine.hashBatch(data, stride, length, count, digests);
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            engine.hash(data, i * stride, length, expected);
+            for (int j = 0; j < SHA256Engine.DIGEST_LONGS; j++)
+                assertEquals(expected[j], digests[i * SHA256Engine.DIGEST_LONGS + j]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hash_whenTheMessageDoesNotFitInASingleBlock_itShouldThrowAnException() {
+        // Arrange
+        SHA256Engine engine = new SHA256Engine();
+
+        // Act
+        engine.hash(new byte[SHA256Engine.MAX_MESSAGE_LENGTH + 1], 0, SHA256Engine.MAX_MESSAGE_LENGTH + 1, new int[SHA256Engine.DIGEST_INTS]);
+    }
+}
@@ -0,0 +1,102 @@
+package de.hpi.ddm.io;
+
+import de.hpi.ddm.configuration.DatasetDescriptor;
+import de.hpi.ddm.structures.StudentRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BinaryStudentDatasetTest {
+    private static final String H1 = "e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5";
+    private static final String H2 = "dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc";
+    private static final String H3 = "c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DatasetDescriptor createDataset(String content) throws IOException {
+        DatasetDescriptor descriptor = new DatasetDescriptor();
+        descriptor.setDatasetPath(folder.getRoot().getPath() + File.separator);
+        descriptor.setDatasetName("students");
+        descriptor.setDatasetEnding(".csv");
+        Files.write(descriptor.getDatasetFile(), content.getBytes(StandardCharsets.UTF_8));
+        return descriptor;
+    }
+
+    private static List<StudentRecord> scanAll(DatasetDescriptor descriptor) throws IOException {
+        List<StudentRecord> records = new ArrayList<>();
+        try (StudentRecordScanner scanner = descriptor.createStudentRecordScanner()) {
+            StudentRecord record;
+            while ((record = scanner.next()) != null)
+                records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void get_whenTheDatasetIsConverted_itShouldReturnTheScannedRecords() throws IOException {
+        // Arrange
+        DatasetDescriptor descriptor = createDataset("ID;Name;PasswordChars;PasswordLength;Password;Hint1;Hint2\n" +
+                "1;Jürgen;ABCDEFG;5;" + H1 + ";" + H2 + ";" + H3 + "\n" +
+                "2;;ABCDEFG;5;" + H2 + "\n" +
+                "3;\"\";;7;" + H3 + ";" + H1 + "\n");
+        Path file = folder.newFolder("binary").toPath().resolve(BinaryStudentDataset.getFileName(descriptor));
+
+        // Act
+        BinaryStudentDataset.convert(descriptor, file);
+        BinaryStudentDataset dataset = BinaryStudentDataset.open(file);
+
+        // Assert
+        List<StudentRecord> expected = scanAll(descriptor);
+        assertEquals(expected.size(), dataset.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i), dataset.get(i));
+        assertSame(dataset.get(0).getPasswordChars(), dataset.get(1).getPasswordChars());
+    }
+
+    @Test
+    public void getOrConvert_whenTheDatasetChanges_itShouldConvertItAgain() throws IOException {
+        // Arrange
+        Path directory = folder.getRoot().toPath().resolve("binary");
+        DatasetDescriptor descriptor = createDataset("ID;Name;PasswordChars;PasswordLength;Password\n1;Name1;ABC;5;" + H1 + "\n");
+        BinaryStudentDataset first = BinaryStudentDataset.getOrConvert(directory, descriptor);
+
+        // Act
+        Files.write(descriptor.getDatasetFile(), ("ID;Name;PasswordChars;PasswordLength;Password\n1;Name1;ABC;5;" + H1 +
+                "\n2;Name2;ABC;5;" + H2 + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(descriptor.getDatasetFile(), FileTime.fromMillis(Files.getLastModifiedTime(descriptor.getDatasetFile()).toMillis() + 1000));
+        BinaryStudentDataset second = BinaryStudentDataset.getOrConvert(directory, descriptor);
+
+        // Assert
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals("Name2", second.get(1).getName());
+    }
+
+    @Test
+    public void getOrConvert_whenTheParserSettingsChange_itShouldConvertItAgain() throws IOException {
+        // Arrange
+        Path directory = folder.getRoot().toPath().resolve("binary");
+        DatasetDescriptor descriptor = createDataset("ID;Name;PasswordChars;PasswordLength;Password\n1;'Name1';ABC;5;" + H1 + "\n");
+        BinaryStudentDataset first = BinaryStudentDataset.getOrConvert(directory, descriptor);
+
+        // Act
+        descriptor.setValueQuote('\'');
+        BinaryStudentDataset second = BinaryStudentDataset.getOrConvert(directory, descriptor);
+
+        // Assert
+        assertEquals("'Name1'", first.get(0).getName());
+        assertEquals("Name1", second.get(0).getName());
+    }
+}
@@ -0,0 +1,184 @@
+package de.hpi.ddm.io;
+
+import de.hpi.ddm.configuration.DatasetDescriptor;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class StudentRecordScannerTest {
+    private static final String H1 = "e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5";
+    private static final String H2 = "dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc";
+    private static final String H3 = "c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<StudentRecord> scanAll(String content, long windowSize) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+
+        List<StudentRecord> records = new ArrayList<>();
+        try (StudentRecordScanner scanner = new StudentRecordScanner(file, new DatasetDescriptor(), 0, Long.MAX_VALUE, windowSize)) {
+            StudentRecord record;
+            while ((record = scanner.next()) != null)
+                records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    public void next_whenScanningPlainRecords_itShouldParseAllFields() throws IOException {
+        // Arrange
+        String content = "ID;Name;PasswordChars;PasswordLength;Password;Hint1;Hint2\n" +
+                "1;Name1;ABCDEFG;5;" + H1 + ";" + H2 + ";" + H3 + "\n" +
+                "\n" +
+                "2;Name2;ABCDEFG;5;" + H2.toUpperCase() + "\n";
+
+        // Act
+        List<StudentRecord> records = scanAll(content, 1 << 20);
+
+        // Assert
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).getId());
+        assertEquals("Name1", records.get(0).getName());
+        assertEquals("ABCDEFG", records.get(0).getPasswordChars());
+        assertEquals(5, records.get(0).getPasswordLength());
+        assertEquals(SHA256Hash.fromHexString(H1), records.get(0).getFullPasswordHash());
+        assertArrayEquals(new SHA256Hash[] { SHA256Hash.fromHexString(H2), SHA256Hash.fromHexString(H3) }, records.get(0).getHintHashes());
+        assertEquals(SHA256Hash.fromHexString(H2), records.get(1).getFullPasswordHash());
+        assertEquals(0, records.get(1).getHintHashes().length);
+    }
+
+    @Test
+    public void next_whenValuesAreQuotedOrEscaped_itShouldUnescapeThem() throws IOException {
+        // Arrange
+        String content = "ID;Name;PasswordChars;PasswordLength;Password\r\n" +
+                "1;\"Name;\"\"1\"\"\n(quoted)\";  ABC\\\"D;5;\"" + H1 + "\"\r\n" +
+                "2;;ABCD;5;" + H2;
+
+        // Act
+        List<StudentRecord> records = scanAll(content, 1 << 20);
+
+        // Assert
+        assertEquals(2, records.size());
+        assertEquals("Name;\"1\"\n(quoted)", records.get(0).getName());
+        assertEquals("ABC\"D", records.get(0).getPasswordChars());
+        assertEquals(SHA256Hash.fromHexString(H1), records.get(0).getFullPasswordHash());
+        assertNull(records.get(1).getName());
+        assertEquals(SHA256Hash.fromHexString(H2), records.get(1).getFullPasswordHash());
+    }
+
+    @Test
+    public void next_whenRecordsCrossTheMappedWindows_itShouldRemapTheFile() throws IOException {
+        // Arrange
+        StringBuilder content = new StringBuilder("ID;Name;PasswordChars;PasswordLength;Password;Hint1\n");
+        for (int i = 0; i < 100; i++)
+            content.append(i).append(";\"Name").append(i).append("\";ABCDEFG;5;").append(H1).append(';').append(H2).append('\n');
+
+        // Act
+        List<StudentRecord> records = scanAll(content.toString(), 300);
+
+        // Assert
+        assertEquals(100, records.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, records.get(i).getId());
+            assertEquals("Name" + i, records.get(i).getName());
+            assertEquals(SHA256Hash.fromHexString(H2), records.get(i).getHintHashes()[0]);
+        }
+    }
+
+    @Test
+    public void next_whenTheFileIsSplitIntoRanges_itShouldReadEachRecordExactlyOnce() throws IOException {
+        // Arrange
+        StringBuilder content = new StringBuilder("ID;Name;PasswordChars;PasswordLength;Password;Hint1\n");
+        for (int i = 0; i < 10; i++)
+            content.append(i).append(";Name").append(i).append(";ABCDEFG;5;").append(H1).append(';').append(H2).append(i % 3 == 0 ? "\r\n\n" : "\n");
+        Path file = folder.newFile().toPath();
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        for (int split = 0; split <= content.length(); split++) {
+            // Act
+            List<StudentRecord> records = new ArrayList<>();
+            for (long[] range : new long[][] { { 0, split }, { split, content.length() } }) {
+                try (StudentRecordScanner scanner = new StudentRecordScanner(file, new DatasetDescriptor(), range[0], range[1], 200)) {
+                    StudentRecord record;
+                    while ((record = scanner.next()) != null)
+                        records.add(record);
+                }
+            }
+
+            // Assert
+            assertEquals("Split at " + split, 10, records.size());
+            for (int i = 0; i < 10; i++)
+                assertEquals("Split at " + split, i, records.get(i).getId());
+        }
+    }
+
+    @Test
+    public void next_whenScanningAStreamInSmallWindows_itShouldRefillAndGrowTheWindow() throws IOException {
+        // Arrange
+        StringBuilder content = new StringBuilder("ID;Name;PasswordChars;PasswordLength;Password;Hint1\n");
+        for (int i = 0; i < 100; i++)
+            content.append(i).append(";\"Name").append(i).append("\";ABCDEFG;5;").append(H1).append(';').append(H2).append('\n');
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        List<StudentRecord> records = new ArrayList<>();
+        try (StudentRecordScanner scanner = new StudentRecordScanner(new ByteArrayInputStream(bytes), new DatasetDescriptor(), 64)) {
+            StudentRecord record;
+            while ((record = scanner.next()) != null)
+                records.add(record);
+        }
+
+        // Assert
+        assertEquals(100, records.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, records.get(i).getId());
+            assertEquals("Name" + i, records.get(i).getName());
+            assertEquals(SHA256Hash.fromHexString(H2), records.get(i).getHintHashes()[0]);
+        }
+    }
+
+    @Test
+    public void createStudentRecordScanner_whenTheDatasetIsCompressed_itShouldDecompressIt() throws IOException {
+        // Arrange
+        DatasetDescriptor descriptor = new DatasetDescriptor();
+        descriptor.setDatasetPath(folder.getRoot().getPath() + File.separator);
+        descriptor.setDatasetName("students");
+        descriptor.setDatasetEnding(".csv.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(descriptor.getDatasetFile()))) {
+            output.write("ID;Name;PasswordChars;PasswordLength;Password\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 10000; i++)
+                output.write((i + ";Name" + i + ";ABCDEFG;5;" + H1 + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Act
+        List<StudentRecord> records = new ArrayList<>();
+        try (StudentRecordScanner scanner = descriptor.createStudentRecordScanner()) {
+            StudentRecord record;
+            while ((record = scanner.next()) != null)
+                records.add(record);
+        }
+
+        // Assert
+        assertTrue(descriptor.isCompressed());
+        assertEquals(10000, records.size());
+        for (int i = 0; i < 10000; i++)
+            assertEquals("Name" + i, records.get(i).getName());
+    }
+}
@@ -0,0 +1,61 @@
+package de.hpi.ddm.serialization;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import de.hpi.ddm.structures.SHA256Hash;
+import de.hpi.ddm.structures.StudentRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MessageKryoInstantiatorTest {
+
+    private static StudentRecord createRecord() {
+        return new StudentRecord(42, "Name42", "ABCDEFGHIJK", 10,
+                SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5"),
+                new SHA256Hash[] {
+                        SHA256Hash.fromHexString("dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc"),
+                        SHA256Hash.fromHexString("c03301c60848edf9474c610f528d9b30403ce35a9f227486bd4050d63b1ad5e0")
+                });
+    }
+
+    private static byte[] serialize(Kryo kryo, Object object) {
+        Output output = new Output(256, -1);
+        kryo.writeClassAndObject(output, object);
+        return output.toBytes();
+    }
+
+    @Test
+    public void newKryo_whenSerializingARegisteredRecord_itShouldRoundTripIt() {
+        // Arrange
+        Kryo kryo = new MessageKryoInstantiator().newKryo();
+        StudentRecord record = createRecord();
+
+        // Act
+        byte[] bytes = serialize(kryo, record);
+        Object deserialized = kryo.readClassAndObject(new Input(bytes));
+
+        // Assert
+        assertTrue(deserialized instanceof StudentRecord);
+        assertEquals(record.getName(), ((StudentRecord) deserialized).getName());
+        assertEquals(record.getFullPasswordHash(), ((StudentRecord) deserialized).getFullPasswordHash());
+        assertArrayEquals(record.getHintHashes(), ((StudentRecord) deserialized).getHintHashes());
+    }
+
+    @Test
+    public void newKryo_whenSerializingARegisteredRecord_itShouldNotWriteClassNames() {
+        // Arrange
+        Kryo registeredKryo = new MessageKryoInstantiator().newKryo();
+        Kryo defaultKryo = new Kryo();
+        StudentRecord record = createRecord();
+
+        // Act
+        byte[] registeredBytes = serialize(registeredKryo, record);
+        byte[] defaultBytes = serialize(defaultKryo, record);
+
+        // Assert
+        assertFalse(new String(registeredBytes).contains("StudentRecord"));
+        assertTrue(registeredBytes.length < defaultBytes.length);
+    }
+}
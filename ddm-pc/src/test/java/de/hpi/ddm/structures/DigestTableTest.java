@@ -0,0 +1,90 @@
+package de.hpi.ddm.structures;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DigestTableTest {
+
+    private static List<SHA256Hash> createHashes(int count) {
+        List<SHA256Hash> hashes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] data = ("hash" + i).getBytes(StandardCharsets.US_ASCII);
+            hashes.add(SHA256Hash.fromDataHash(data, data.length));
+        }
+        return hashes;
+    }
+
+    @Test
+    public void indexOf_whenAddingManyHashes_itShouldFindAllOfThemByTheirId() {
+        // Arrange
+        List<SHA256Hash> hashes = createHashes(1000);
+        DigestTable table = new DigestTable();
+
+        // Act
+        for (SHA256Hash hash : hashes)
+            table.add(hash);
+
+        // Assert
+        assertEquals(hashes.size(), table.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            assertEquals(i, table.indexOf(hashes.get(i)));
+            assertEquals(hashes.get(i), table.getHash(i));
+            assertTrue(table.mightContain(hashes.get(i).getWord(0)));
+        }
+        assertEquals(-1, table.indexOf(SHA256Hash.fromHexString("0123456789012345678901234567890123456789012345678901234567890123")));
+    }
+
+    @Test
+    public void add_whenAddingTheSameHashTwice_itShouldReturnTheSameId() {
+        // Arrange
+        SHA256Hash hash = createHashes(1).get(0);
+        DigestTable table = new DigestTable();
+
+        // Act
+        int id1 = table.add(hash);
+        int id2 = table.add(SHA256Hash.fromWords(hash.getWord(0), hash.getWord(1), hash.getWord(2), hash.getWord(3)));
+
+        // Assert
+        assertEquals(id1, id2);
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void remove_whenRemovingSomeHashes_itShouldKeepFindingTheOthers() {
+        // Arrange
+        List<SHA256Hash> hashes = createHashes(1000);
+        DigestTable table = DigestTable.of(hashes);
+
+        // Act
+        for (int i = 0; i < hashes.size(); i += 3)
+            assertEquals(i, table.remove(hashes.get(i)));
+
+        // Assert
+        for (int i = 0; i < hashes.size(); i++)
+            assertEquals(i % 3 == 0 ? -1 : i, table.indexOf(hashes.get(i)));
+        assertEquals(-1, table.remove(hashes.get(0)));
+        assertEquals(hashes.size() - (hashes.size() + 2) / 3, table.size());
+    }
+
+    @Test
+    public void toWords_whenRecreatingTheTableFromTheWords_itShouldContainTheSameHashes() {
+        // Arrange
+        List<SHA256Hash> hashes = createHashes(100);
+        DigestTable table = DigestTable.of(hashes);
+        table.remove(hashes.get(0));
+
+        // Act
+        DigestTable copy = DigestTable.ofWords(table.toWords());
+
+        // Assert
+        assertEquals(99, copy.size());
+        assertFalse(copy.contains(hashes.get(0)));
+        for (int i = 1; i < hashes.size(); i++)
+            assertTrue(copy.contains(hashes.get(i)));
+    }
+}
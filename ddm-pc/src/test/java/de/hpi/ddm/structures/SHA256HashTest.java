@@ -0,0 +1,58 @@
+package de.hpi.ddm.structures;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SHA256HashTest {
+
+    @Test
+    public void toString_whenTheDigestHasHighBytes_itShouldReturnTheOriginalHexString() {
+        // Arrange
+        String hexString = "e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5";
+
+        // Act
+        SHA256Hash hash = SHA256Hash.fromHexString(hexString.toUpperCase());
+
+        // Assert
+        assertEquals(hexString, hash.toString());
+        assertEquals(0xe9c0f8b575cbfcb4L, hash.getWord(0));
+        assertEquals(0x4e96f240bf6a82f5L, hash.getWord(3));
+    }
+
+    @Test
+    public void equals_whenTheDigestsAreTheSame_itShouldBeEqualWithTheSameHashCode() {
+        // Arrange
+        byte[] data = "ABCDEF".getBytes();
+
+        // Act
+        SHA256Hash fromData = SHA256Hash.fromDataHash(data, data.length);
+        SHA256Hash fromHex = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f5");
+        SHA256Hash other = SHA256Hash.fromHexString("e9c0f8b575cbfcb42ab3b78ecc87efa3b011d9a5d10b09fa4e96f240bf6a82f6");
+
+        // Assert
+        assertEquals(fromHex, fromData);
+        assertEquals(fromHex.hashCode(), fromData.hashCode());
+        assertNotEquals(fromHex, other);
+    }
+
+    @Test
+    public void serialize_whenUsingKryo_itShouldWriteTheRawDigestBytes() {
+        // Arrange
+        Kryo kryo = new Kryo();
+        kryo.setReferences(false); // Otherwise, a reference marker is written before the hash
+        SHA256Hash hash = SHA256Hash.fromHexString("dbd17ff94e777edbd8114bb355a74c3a07571ad4dc92d66d41521df76efd14cc");
+        Output output = new Output(64);
+
+        // Act
+        kryo.writeObject(output, hash);
+        SHA256Hash deserialized = kryo.readObject(new Input(output.toBytes()), SHA256Hash.class);
+
+        // Assert
+        assertEquals(SHA256Hash.SHA256_DIGEST_LENGTH, output.position());
+        assertEquals(hash, deserialized);
+    }
+}